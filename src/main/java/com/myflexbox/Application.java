@@ -1,9 +1,12 @@
 package com.myflexbox;
 
 import com.vaadin.flow.component.page.AppShellConfigurator;
+import com.vaadin.flow.component.page.Push;
 import com.vaadin.flow.theme.Theme;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * The entry point of the Spring Boot application.
@@ -11,13 +14,25 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * Use the @PWA annotation make the application installable on phones, tablets
  * and some desktop browsers.
  *
+ * Server push is enabled so the preview grid can be filled while an upload is still in progress.
+ *
+ * Startup steps are buffered, so the time spent booting can be reported and read from /actuator/startup.
+ *
+ * Scheduling is enabled for the workers importing chunks of cluster imports.
+ *
  */
 @SpringBootApplication
 @Theme(value = "csvimporter")
+@Push
+@EnableScheduling
 public class Application implements AppShellConfigurator {
 
+    private static final int STARTUP_STEPS_CAPACITY = 10000;
+
     public static void main(String[] args) {
-        SpringApplication.run(Application.class, args);
+        SpringApplication application = new SpringApplication(Application.class);
+        application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS_CAPACITY));
+        application.run(args);
     }
 
 }
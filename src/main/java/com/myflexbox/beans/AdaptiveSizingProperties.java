@@ -0,0 +1,62 @@
+package com.myflexbox.beans;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounds and targets of the adaptive chunk and batch sizing of chunked imports,
+ * bound from the {@code csvimporter.import.adaptive.*} properties.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "csvimporter.import.adaptive")
+public class AdaptiveSizingProperties {
+
+    /**
+     * Whether chunk and batch sizes are tuned while importing; otherwise the configured chunk size is kept.
+     */
+    private boolean enabled = true;
+
+    private int minChunkSize = 100;
+    private int maxChunkSize = 50000;
+
+    /**
+     * Rows added to the chunk size after a chunk within all targets.
+     */
+    private int chunkSizeIncrement = 500;
+
+    /**
+     * JDBC batch size of the first chunk, matching hibernate.jdbc.batch_size.
+     */
+    private int initialBatchSize = 50;
+    private int minBatchSize = 10;
+    private int maxBatchSize = 1000;
+
+    /**
+     * Statements added to the JDBC batch size after a chunk within all targets.
+     */
+    private int batchSizeIncrement = 25;
+
+    /**
+     * Factor both sizes are multiplied with after a chunk that missed a target.
+     */
+    private double decreaseFactor = 0.5;
+
+    /**
+     * Longest acceptable commit of one chunk, in milliseconds.
+     */
+    private long targetCommitMillis = 1000;
+
+    /**
+     * Largest acceptable share of a chunk's processing time spent in garbage collection.
+     */
+    private double maxGcTimeRatio = 0.2;
+
+    /**
+     * Largest acceptable share of the maximum heap in use after a chunk.
+     */
+    private double maxHeapUsage = 0.85;
+}
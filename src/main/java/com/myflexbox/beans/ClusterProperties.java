@@ -0,0 +1,69 @@
+package com.myflexbox.beans;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Settings for importing staged files on several nodes sharing one database,
+ * bound from the {@code csvimporter.cluster.*} properties.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "csvimporter.cluster")
+public class ClusterProperties {
+
+    /**
+     * Whether imports are split into chunks claimed by the workers of all nodes. The staging directory
+     * then has to be shared by all nodes under the same path.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Id of this node, unique within the cluster and stable across restarts; the host name by default.
+     */
+    private String nodeId = defaultNodeId();
+
+    /**
+     * Number of chunks this node imports at the same time; 0 only coordinates its own imports.
+     */
+    private int workerThreads = 2;
+
+    /**
+     * Number of CSV rows per chunk.
+     */
+    private int chunkRows = 10000;
+
+    /**
+     * Time after which the lease of a chunk whose node stopped renewing it expires.
+     */
+    private int leaseSeconds = 60;
+
+    /**
+     * Interval in which leases are renewed, well below the lease time.
+     */
+    private int heartbeatSeconds = 15;
+
+    /**
+     * Interval in which workers look for chunks to claim and coordinators check their jobs.
+     */
+    private long pollMillis = 1000;
+
+    /**
+     * Number of claims after which an unfinished chunk fails its job.
+     */
+    private int maxAttempts = 3;
+
+    private static String defaultNodeId() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.myflexbox.beans;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for CSV exports, bound from the {@code csvimporter.export.*} properties.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "csvimporter.export")
+public class ExportProperties {
+
+    /**
+     * Number of rows read from the database per keyset page.
+     */
+    private int pageSize = 1000;
+}
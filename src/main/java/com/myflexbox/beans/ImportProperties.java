@@ -0,0 +1,49 @@
+package com.myflexbox.beans;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Settings for CSV imports, bound from the {@code csvimporter.import.*} properties.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "csvimporter.import")
+public class ImportProperties {
+
+    /**
+     * Directory uploaded files are copied to, so an interrupted import can still read them after a restart.
+     */
+    private Path stagingDir = Path.of(System.getProperty("java.io.tmpdir"), "csvimporter");
+
+    /**
+     * Number of CSV rows committed per transaction (and per checkpoint).
+     */
+    private int chunkSize = 1000;
+
+    /**
+     * Whether plain column-copy imports into H2 may use the CSVREAD bulk-load fast path.
+     */
+    private boolean bulkLoadEnabled = false;
+
+    /**
+     * Similarity score (0 to 1) from which two people are reported as duplicates.
+     */
+    private double duplicateThreshold = 0.92;
+
+    /**
+     * Number of writer threads of a fresh import, each with its own connection; 1 imports in checkpointed chunks.
+     * With more writers the import is all-or-nothing. Keep it below the connection pool size.
+     */
+    private int writers = 1;
+
+    /**
+     * Number of threads running the imports saved from the import view; further saves wait for a free one.
+     */
+    private int backgroundImports = 4;
+}
@@ -0,0 +1,32 @@
+package com.myflexbox.beans;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for the CSV preview grid, bound from the {@code csvimporter.preview.*} properties.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "csvimporter.preview")
+public class PreviewProperties {
+
+    /**
+     * Maximum number of rows shown in the preview grid; the rest of the file is only counted.
+     */
+    private int maxRows = 10000;
+
+    /**
+     * Files with more columns than this are previewed in compact mode: one rendered cell per row holding
+     * only the columns of the current column window.
+     */
+    private int compactColumnThreshold = 30;
+
+    /**
+     * Number of columns shown (and sent to the browser) at a time in compact mode.
+     */
+    private int compactWindowColumns = 12;
+}
@@ -0,0 +1,26 @@
+package com.myflexbox.beans;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for the startup report, bound from the {@code csvimporter.startup.*} properties.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "csvimporter.startup")
+public class StartupProperties {
+
+    /**
+     * Number of slowest startup steps logged once the application is ready; 0 disables the report.
+     */
+    private int reportSteps = 20;
+
+    /**
+     * Whether the application exits as soon as it is ready, used by the class-data-sharing training run.
+     */
+    private boolean exitOnReady = false;
+}
@@ -0,0 +1,62 @@
+package com.myflexbox.beans;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Logs where the boot time went once the application is ready: the total time and the slowest
+ * {@link org.springframework.core.metrics.ApplicationStartup} steps recorded by {@link BufferingApplicationStartup}.
+ * The full timeline stays available on the {@code /actuator/startup} endpoint.
+ */
+@Slf4j
+@Component
+public class StartupReportListener implements ApplicationListener<ApplicationReadyEvent> {
+
+    private final StartupProperties startupProperties;
+
+    public StartupReportListener(StartupProperties startupProperties) {
+        this.startupProperties = startupProperties;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        if (startupProperties.getReportSteps() > 0
+                && context.getApplicationStartup() instanceof BufferingApplicationStartup startup) {
+            log.info(report(startup.getBufferedTimeline(), event.getTimeTaken().toMillis()));
+        }
+        if (startupProperties.isExitOnReady()) {
+            log.info("Startup finished, exiting as requested by csvimporter.startup.exit-on-ready");
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    /**
+     * Formats the slowest steps of the timeline, their durations include the steps nested in them.
+     */
+    private String report(StartupTimeline timeline, long totalMillis) {
+        List<StartupTimeline.TimelineEvent> slowest = timeline.getEvents().stream()
+                .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+                .limit(startupProperties.getReportSteps())
+                .toList();
+        StringBuilder report = new StringBuilder("Application ready in ").append(totalMillis)
+                .append(" ms, slowest startup steps:");
+        for (StartupTimeline.TimelineEvent event : slowest) {
+            report.append(String.format("%n%8d ms  %s", event.getDuration().toMillis(), event.getStartupStep().getName()));
+            for (StartupStep.Tag tag : event.getStartupStep().getTags()) {
+                report.append(' ').append(tag.getKey()).append('=').append(tag.getValue());
+            }
+        }
+        return report.toString();
+    }
+}
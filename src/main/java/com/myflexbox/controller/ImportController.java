@@ -0,0 +1,117 @@
+package com.myflexbox.controller;
+
+import com.myflexbox.entity.ImportJob;
+import com.myflexbox.entity.ImportJobStatus;
+import com.myflexbox.mapper.CsvColumnMapper;
+import com.myflexbox.mapper.CsvMapping;
+import com.myflexbox.mapper.CsvRecordReader;
+import com.myflexbox.service.ImportJobConflictException;
+import com.myflexbox.service.ImportService;
+import com.myflexbox.service.ImportStagingService;
+import com.myflexbox.service.StagedFile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * REST endpoints running the upload, map and save steps of the import view without a browser,
+ * backed by the same staging and import services.
+ */
+@RestController
+@RequestMapping("/api/imports")
+public class ImportController {
+
+    private final ImportStagingService importStagingService;
+    private final ImportService importService;
+    private final CsvColumnMapper csvColumnMapper = new CsvColumnMapper();
+
+    public ImportController(ImportStagingService importStagingService, ImportService importService) {
+        this.importStagingService = importStagingService;
+        this.importService = importService;
+    }
+
+    /**
+     * The result of an upload: the key to import the staged file with and its header row to map.
+     */
+    public record StagedUpload(String hash, String fileName, long size, String[] header) {
+    }
+
+    /**
+     * The mapping of a staged file: one mapping name (e.g. "First" or "Ignore") and optionally one
+     * transformation expression per column.
+     */
+    public record ImportRequest(String fileName, List<String> mappings, List<String> transforms,
+                                boolean mergeDuplicates) {
+    }
+
+    /**
+     * The outcome of an import.
+     */
+    public record ImportResult(Long jobId, ImportJobStatus status, long rowsCommitted, long usersImported) {
+    }
+
+    /**
+     * Stages an uploaded CSV file.
+     *
+     * @param file The uploaded CSV file.
+     * @return the staged file's hash and header row.
+     * @throws IOException if the upload cannot be staged.
+     */
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public StagedUpload upload(@RequestParam("file") MultipartFile file) throws IOException {
+        StagedFile stagedFile;
+        try (InputStream inputStream = file.getInputStream()) {
+            stagedFile = importStagingService.stage(inputStream, file.getOriginalFilename());
+        }
+        String[] header;
+        try (CsvRecordReader reader = new CsvRecordReader(Files.newInputStream(stagedFile.path()), 0)) {
+            header = reader.readRecord();
+        }
+        if (header == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The uploaded file is empty");
+        }
+        return new StagedUpload(stagedFile.hash(), stagedFile.fileName(), stagedFile.size(), header);
+    }
+
+    /**
+     * Imports a staged file with the given mapping.
+     *
+     * @param hash    The hash returned by the upload.
+     * @param request The column mappings and transformations.
+     * @return the finished import job.
+     * @throws IOException if the staged file cannot be read.
+     */
+    @PostMapping("/{hash}")
+    public ImportResult importStaged(@PathVariable String hash, @RequestBody ImportRequest request) throws IOException {
+        StagedFile stagedFile = importStagingService.findStaged(hash, request.fileName())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No staged file " + hash));
+        if (request.mappings() == null || request.mappings().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Please complete the mapping!");
+        }
+        List<CsvMapping> mappings = new ArrayList<>();
+        try {
+            for (String name : request.mappings()) {
+                mappings.add(csvColumnMapper.findMapping(name));
+            }
+            ImportJob job = importService.importFile(stagedFile, mappings, request.transforms(), request.mergeDuplicates());
+            return new ImportResult(job.getId(), job.getStatus(), job.getRowsCommitted(), job.getUsersImported());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (ImportJobConflictException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.myflexbox.controller;
+
+import com.myflexbox.repository.UserRepository;
+import com.myflexbox.service.UserExportService;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * REST endpoints for the imported users.
+ */
+@RestController
+@RequestMapping("/api/users")
+public class UserController {
+
+    private final UserRepository userRepository;
+    private final UserExportService userExportService;
+
+    public UserController(UserRepository userRepository, UserExportService userExportService) {
+        this.userRepository = userRepository;
+        this.userExportService = userExportService;
+    }
+
+    /**
+     * Looks up users by exactly one of last name, postcode or country, one page at a time.
+     * Lookups by last name return the user columns only; the others include the address.
+     *
+     * @param lastName The last name to look up.
+     * @param postcode The postcode to look up.
+     * @param country  The country to look up.
+     * @param pageable The requested page, 50 users sorted by id unless given.
+     * @return the requested slice of users.
+     */
+    @GetMapping
+    public Slice<?> find(@RequestParam(required = false) String lastName,
+                         @RequestParam(required = false) String postcode,
+                         @RequestParam(required = false) String country,
+                         @PageableDefault(size = 50, sort = "id", direction = Sort.Direction.ASC) Pageable pageable) {
+        if (lastName != null && postcode == null && country == null) {
+            return userRepository.findByLastName(lastName, pageable);
+        }
+        if (postcode != null && lastName == null && country == null) {
+            return userRepository.findSummariesByPostcode(postcode, pageable);
+        }
+        if (country != null && lastName == null && postcode == null) {
+            return userRepository.findSummariesByCountry(country, pageable);
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Specify exactly one of lastName, postcode or country");
+    }
+
+    /**
+     * Streams all users with their addresses as a CSV download.
+     *
+     * @param gzip Whether the CSV should be gzipped.
+     * @return the streaming CSV response.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "false") boolean gzip) {
+        String fileName = gzip ? "users.csv.gz" : "users.csv";
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.parseMediaType("text/csv"))
+                .body(outputStream -> userExportService.writeCsv(outputStream, gzip));
+    }
+}
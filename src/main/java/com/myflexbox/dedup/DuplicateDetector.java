@@ -0,0 +1,286 @@
+package com.myflexbox.dedup;
+
+import org.apache.commons.codec.language.DoubleMetaphone;
+import org.apache.commons.text.similarity.JaroWinklerSimilarity;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Finds near-duplicate people without comparing every pair of records.
+ * Each record is put into a few buckets: one blocking key made of its postcode and the phonetic code of its
+ * last name, and one key per LSH band of a MinHash signature over the character trigrams of its name and street.
+ * Only records sharing a bucket are scored with Jaro-Winkler similarity, which keeps the work close to linear
+ * in the number of records. Signatures, bucketing and scoring run in parallel.
+ */
+public class DuplicateDetector {
+
+    private static final int SHINGLE_LENGTH = 3;
+    private static final int BANDS = 8;
+    private static final int ROWS_PER_BAND = 4;
+    private static final int SIGNATURE_LENGTH = BANDS * ROWS_PER_BAND;
+    private static final long[] SEEDS = new SplittableRandom(42).longs(SIGNATURE_LENGTH).toArray();
+    private static final long PHONETIC_KEY = 0x5048L;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Buckets larger than this are too unselective to compare exhaustively; their members are only compared
+     * with their neighbours in name order.
+     */
+    private static final int MAX_EXHAUSTIVE_BUCKET = 200;
+    private static final int NEIGHBOUR_WINDOW = 20;
+
+    private final double threshold;
+    private final JaroWinklerSimilarity similarity = new JaroWinklerSimilarity();
+    private final DoubleMetaphone doubleMetaphone = new DoubleMetaphone();
+
+    /**
+     * @param threshold The similarity score from which two records are considered duplicates, e.g. 0.92.
+     */
+    public DuplicateDetector(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Finds the duplicates among the given records. Saved users are never reported as duplicates, not even when
+     * an imported record links two of them into one cluster; only the imported records of a cluster are.
+     * The result only depends on the records, not on the order in which parallel work completes.
+     *
+     * @param records The records to check.
+     * @return One match per duplicate record, ordered by the duplicate's position in the given list.
+     */
+    public List<DuplicateMatch> findDuplicates(List<PersonRecord> records) {
+        Prepared[] prepared = IntStream.range(0, records.size()).parallel()
+                .mapToObj(i -> prepare(records.get(i)))
+                .toArray(Prepared[]::new);
+
+        Map<Long, List<Integer>> buckets = IntStream.range(0, prepared.length).parallel().boxed()
+                .flatMap(i -> Arrays.stream(prepared[i].bucketKeys).mapToObj(key -> Map.entry(key, i)))
+                .collect(Collectors.groupingByConcurrent(Map.Entry::getKey,
+                        Collectors.mapping(Map.Entry::getValue, Collectors.toList())));
+
+        Queue<ScoredPair> matches = new ConcurrentLinkedQueue<>();
+        buckets.entrySet().parallelStream()
+                .filter(bucket -> bucket.getValue().size() > 1)
+                .forEach(bucket -> compareBucket(bucket.getKey(), bucket.getValue(), prepared, buckets, matches));
+
+        return resolve(records, prepared, matches);
+    }
+
+    /**
+     * Compares the members of one bucket, each unordered pair at most once: all pairs of a small bucket in
+     * index order, or each member with its following neighbours in name order.
+     */
+    private void compareBucket(long key, List<Integer> bucket, Prepared[] prepared, Map<Long, List<Integer>> buckets,
+                               Queue<ScoredPair> matches) {
+        int[] members = bucket.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+        if (bucket.size() <= MAX_EXHAUSTIVE_BUCKET) {
+            for (int i = 0; i < members.length; i++) {
+                for (int j = i + 1; j < members.length; j++) {
+                    if (!scoredInOtherBucket(key, true, prepared[members[i]], prepared[members[j]], buckets)) {
+                        compare(members[i], members[j], prepared, matches);
+                    }
+                }
+            }
+            return;
+        }
+        Integer[] byName = Arrays.stream(members).boxed()
+                .sorted(Comparator.<Integer, String>comparing(i -> prepared[i].name).thenComparing(i -> i))
+                .toArray(Integer[]::new);
+        for (int i = 0; i < byName.length; i++) {
+            for (int j = i + 1; j < Math.min(byName.length, i + 1 + NEIGHBOUR_WINDOW); j++) {
+                if (!scoredInOtherBucket(key, false, prepared[byName[i]], prepared[byName[j]], buckets)) {
+                    compare(Math.min(byName[i], byName[j]), Math.max(byName[i], byName[j]), prepared, matches);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records sharing several buckets are scored in only one of them, without remembering the compared pairs:
+     * in the small bucket with the lowest key they share, or, if they share no small bucket, in the large
+     * buckets they are neighbours in. The bucket keys of a record are sorted, so the shared keys are found
+     * by merging the two key arrays.
+     *
+     * @param exhaustive Whether the bucket with the given key is small enough to compare all its pairs.
+     * @return true if the pair is scored in another bucket.
+     */
+    private static boolean scoredInOtherBucket(long key, boolean exhaustive, Prepared a, Prepared b,
+                                               Map<Long, List<Integer>> buckets) {
+        long[] keysA = a.bucketKeys;
+        long[] keysB = b.bucketKeys;
+        int i = 0;
+        int j = 0;
+        while (i < keysA.length && j < keysB.length) {
+            if (keysA[i] < keysB[j]) {
+                i++;
+            } else if (keysA[i] > keysB[j]) {
+                j++;
+            } else {
+                long shared = keysA[i];
+                if (exhaustive && shared >= key) {
+                    return false;
+                }
+                if (shared != key && buckets.get(shared).size() <= MAX_EXHAUSTIVE_BUCKET) {
+                    return true;
+                }
+                i++;
+                j++;
+            }
+        }
+        return false;
+    }
+
+    private void compare(int first, int second, Prepared[] prepared, Queue<ScoredPair> matches) {
+        Prepared a = prepared[first];
+        Prepared b = prepared[second];
+        if (a.record.existing() && b.record.existing()) {
+            return;
+        }
+        double score = score(a, b);
+        if (score >= threshold) {
+            matches.add(new ScoredPair(first, second, score));
+        }
+    }
+
+    private double score(Prepared a, Prepared b) {
+        double nameScore = similarity.apply(a.name, b.name);
+        double score = a.street.isEmpty() || b.street.isEmpty()
+                ? nameScore
+                : 0.75 * nameScore + 0.25 * similarity.apply(a.street, b.street);
+        if (!a.postcode.equals(b.postcode)) {
+            score -= 0.05;
+        }
+        return score;
+    }
+
+    /**
+     * Clusters the matched pairs with union-find and reports every imported record except each cluster's original.
+     * A cluster holding saved users has one of them as its original and reports none of them.
+     */
+    private List<DuplicateMatch> resolve(List<PersonRecord> records, Prepared[] prepared, Queue<ScoredPair> matches) {
+        int[] parent = IntStream.range(0, records.size()).toArray();
+        double[] bestScore = new double[records.size()];
+        for (ScoredPair pair : matches) {
+            union(parent, prepared, pair.first, pair.second);
+            bestScore[pair.first] = Math.max(bestScore[pair.first], pair.score);
+            bestScore[pair.second] = Math.max(bestScore[pair.second], pair.score);
+        }
+
+        List<DuplicateMatch> duplicates = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            int root = find(parent, i);
+            if (root != i && !records.get(i).existing()) {
+                duplicates.add(new DuplicateMatch(records.get(i), records.get(root), bestScore[i]));
+            }
+        }
+        return duplicates;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Joins two clusters, keeping a saved user as the root if there is one and the earliest record otherwise.
+     */
+    private static void union(int[] parent, Prepared[] prepared, int first, int second) {
+        int a = find(parent, first);
+        int b = find(parent, second);
+        if (a == b) {
+            return;
+        }
+        boolean aExisting = prepared[a].record.existing();
+        boolean bExisting = prepared[b].record.existing();
+        boolean keepA = aExisting != bExisting ? aExisting : a < b;
+        if (keepA) {
+            parent[b] = a;
+        } else {
+            parent[a] = b;
+        }
+    }
+
+    private Prepared prepare(PersonRecord record) {
+        String firstName = normalize(record.firstName());
+        String lastName = normalize(record.lastName());
+        String name = (firstName + " " + lastName).trim();
+        String street = normalize(record.street());
+        String postcode = record.postcode() == null ? "" : NON_ALPHANUMERIC.matcher(record.postcode()).replaceAll("").toUpperCase(Locale.ROOT);
+
+        long[] bucketKeys = new long[BANDS + 1];
+        int[] signature = minHash(name + " | " + street);
+        for (int band = 0; band < BANDS; band++) {
+            long key = band;
+            for (int row = 0; row < ROWS_PER_BAND; row++) {
+                key = key * 31 + signature[band * ROWS_PER_BAND + row];
+            }
+            bucketKeys[band] = mix(key);
+        }
+        if (!postcode.isEmpty() && !lastName.isEmpty()) {
+            String phonetic = doubleMetaphone.doubleMetaphone(lastName);
+            bucketKeys[BANDS] = mix(PHONETIC_KEY * 31 + (postcode + "|" + phonetic).hashCode());
+        } else {
+            bucketKeys = Arrays.copyOf(bucketKeys, BANDS);
+        }
+        Arrays.sort(bucketKeys);
+        return new Prepared(record, name, street, postcode, bucketKeys);
+    }
+
+    private static int[] minHash(String text) {
+        int[] signature = new int[SIGNATURE_LENGTH];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        String padded = " " + text + " ";
+        for (int i = 0; i + SHINGLE_LENGTH <= padded.length(); i++) {
+            long shingle = padded.charAt(i) * 961L + padded.charAt(i + 1) * 31L + padded.charAt(i + 2);
+            for (int k = 0; k < SIGNATURE_LENGTH; k++) {
+                int hash = (int) (mix(shingle ^ SEEDS[k]) >>> 33);
+                if (hash < signature[k]) {
+                    signature[k] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String withoutMarks = MARKS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("");
+        return NON_ALPHANUMERIC.matcher(withoutMarks.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /**
+     * The finalizer of MurmurHash3, spreading all input bits over the whole 64 bit result.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private record Prepared(PersonRecord record, String name, String street, String postcode, long[] bucketKeys) {
+    }
+
+    private record ScoredPair(int first, int second, double score) {
+    }
+}
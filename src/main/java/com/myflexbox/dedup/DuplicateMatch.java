@@ -0,0 +1,11 @@
+package com.myflexbox.dedup;
+
+/**
+ * A record suspected to duplicate another one.
+ *
+ * @param duplicate The record that should be merged into the original.
+ * @param original  The record kept: a saved user if one matched, otherwise the earliest row of its cluster.
+ * @param score     The highest similarity score that linked the duplicate into the cluster, between 0 and 1.
+ */
+public record DuplicateMatch(PersonRecord duplicate, PersonRecord original, double score) {
+}
@@ -0,0 +1,14 @@
+package com.myflexbox.dedup;
+
+/**
+ * The fields of a person compared by the duplicate detection.
+ *
+ * @param key       The data row index for rows of the imported file, or the user id for saved users.
+ * @param existing  Whether the person is an already saved user rather than a row of the imported file.
+ * @param firstName The first name, may be null.
+ * @param lastName  The last name, may be null.
+ * @param street    The street, may be null.
+ * @param postcode  The postcode, may be null.
+ */
+public record PersonRecord(long key, boolean existing, String firstName, String lastName, String street, String postcode) {
+}
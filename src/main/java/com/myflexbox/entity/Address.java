@@ -1,20 +1,41 @@
 package com.myflexbox.entity;
 
+import com.myflexbox.service.SequenceIdAllocator;
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.Objects;
+import java.util.UUID;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter
 @Setter
-@Table(name = "address")
+@Table(name = "address", indexes = {
+        @Index(name = "idx_address_postcode", columnList = "postcode"),
+        @Index(name = "idx_address_country", columnList = "country")
+})
 public class Address {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "address_seq")
+    @SequenceGenerator(name = "address_seq", sequenceName = "address_seq", allocationSize = SequenceIdAllocator.ALLOCATION_SIZE)
     private Long id;
+
+    /**
+     * Key of equals and hashCode, assigned on construction and stored with the row, see {@link EntityKeys}.
+     */
+    @ColumnDefault("random_uuid()")
+    @Column(nullable = false, updatable = false)
+    @Setter(AccessLevel.NONE)
+    private UUID uuid = EntityKeys.newKey();
+
     private String street;
     private String postcode;
     private String country;
@@ -26,11 +47,11 @@ public class Address {
         if (this == o) return true;
         if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
         Address address = (Address) o;
-        return id != null && Objects.equals(id, address.id);
+        return uuid.equals(address.getUuid());
     }
 
     @Override
     public int hashCode() {
-        return getClass().hashCode();
+        return uuid.hashCode();
     }
 }
@@ -0,0 +1,55 @@
+package com.myflexbox.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.Hibernate;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Single lock row serializing bulk loads across all nodes sharing the database.
+ * The owner holds it for as long as the secondary indexes of the users and address tables are dropped and the
+ * users to address foreign key is unchecked, so a lock still held by a node that starts up marks a bulk load
+ * interrupted by a crash whose schema changes have to be reverted.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "bulk_load_lock")
+public class BulkLoadLock {
+
+    /**
+     * Id of the only lock row.
+     */
+    public static final long ID = 1;
+
+    @Id
+    private Long id;
+
+    /**
+     * Node id of the node running a bulk load, null while none is running.
+     */
+    private String owner;
+    private LocalDateTime acquiredAt;
+
+    public BulkLoadLock() { }
+
+    public BulkLoadLock(Long id) {
+        this.id = id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+        BulkLoadLock lock = (BulkLoadLock) o;
+        return id != null && Objects.equals(id, lock.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
+}
@@ -0,0 +1,29 @@
+package com.myflexbox.entity;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Creates the keys entities with generated ids use for {@code equals} and {@code hashCode}.
+ * The key is assigned when the entity is constructed and stored with it, so it neither changes when the id is
+ * generated on save nor differs between two loaded copies of the same row, and it spreads entities evenly over
+ * the buckets of hash based collections. It is not meant to be unguessable, so it is drawn from the thread's
+ * random generator instead of {@link UUID#randomUUID()}, which would make every imported row wait on a shared
+ * secure random source.
+ */
+final class EntityKeys {
+
+    private EntityKeys() {
+        // private constructor to prevent instantiation
+    }
+
+    /**
+     * @return A new random (version 4) UUID.
+     */
+    static UUID newKey() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSignificantBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSignificantBits = (random.nextLong() & ~(0xC000000000000000L)) | 0x8000000000000000L;
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+}
@@ -0,0 +1,87 @@
+package com.myflexbox.entity;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * A slice of a staged file imported by whichever node claims it.
+ * A node claims a chunk by taking its lease with a conditional update, renews the lease while it imports the
+ * chunk and marks it done in the same transaction as the imported users, on condition that it still holds the
+ * lease. A chunk whose lease expired is claimed again by another node, so a crashed node's work is taken over.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "import_chunk", indexes = {
+        @Index(name = "idx_import_chunk_job", columnList = "jobId"),
+        @Index(name = "idx_import_chunk_status", columnList = "status, leaseExpiresAt")
+})
+public class ImportChunk {
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    /**
+     * Key of equals and hashCode, assigned on construction and stored with the row, see {@link EntityKeys}.
+     */
+    @ColumnDefault("random_uuid()")
+    @Column(nullable = false, updatable = false)
+    @Setter(AccessLevel.NONE)
+    private UUID uuid = EntityKeys.newKey();
+
+    private Long jobId;
+    private int chunkIndex;
+
+    /**
+     * Byte offset of the chunk's first row in the staged file.
+     */
+    private long startOffset;
+
+    /**
+     * Data row index (the header not counted) of the chunk's first row.
+     */
+    private long firstRowIndex;
+    private int rowCount;
+
+    @Enumerated(EnumType.STRING)
+    private ImportChunkStatus status;
+
+    /**
+     * Node id of the lease holder, null while the chunk is pending.
+     */
+    private String owner;
+    private LocalDateTime leaseExpiresAt;
+
+    /**
+     * Number of times the chunk was claimed; a chunk failing too often fails its job.
+     */
+    private int attempts;
+    private long usersImported;
+
+    @Column(length = 1000)
+    private String lastError;
+    private LocalDateTime updatedAt;
+
+    public ImportChunk() { }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+        ImportChunk chunk = (ImportChunk) o;
+        return uuid.equals(chunk.getUuid());
+    }
+
+    @Override
+    public int hashCode() {
+        return uuid.hashCode();
+    }
+}
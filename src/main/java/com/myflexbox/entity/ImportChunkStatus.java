@@ -0,0 +1,13 @@
+package com.myflexbox.entity;
+
+/**
+ * Lifecycle states of an {@link ImportChunk}.
+ */
+public enum ImportChunkStatus {
+    PENDING,
+    /**
+     * A node's worker holds the lease of the chunk and is importing it.
+     */
+    CLAIMED,
+    DONE
+}
@@ -0,0 +1,81 @@
+package com.myflexbox.entity;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Durable record of a chunked CSV import.
+ * After every committed chunk the job stores how far into the staged file it got, so an import
+ * interrupted by a crash or restart can continue from the last committed chunk instead of starting over.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "import_job")
+public class ImportJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    /**
+     * Key of equals and hashCode, assigned on construction and stored with the row, see {@link EntityKeys}.
+     */
+    @ColumnDefault("random_uuid()")
+    @Column(nullable = false, updatable = false)
+    @Setter(AccessLevel.NONE)
+    private UUID uuid = EntityKeys.newKey();
+
+    private String fileName;
+    private String sourceHash;
+    private String stagedPath;
+    private String columnMappings;
+
+    @Column(length = 4000)
+    private String columnTransforms;
+
+    /**
+     * Whether rows detected as duplicates of earlier rows of the same file are skipped.
+     */
+    @ColumnDefault("false")
+    private boolean mergeDuplicates;
+
+    @Enumerated(EnumType.STRING)
+    private ImportJobStatus status;
+
+    private int chunkSize;
+    private int chunksCommitted;
+    private long rowsCommitted;
+    private long byteOffset;
+    private long usersImported;
+    private String errorMessage;
+
+    /**
+     * Node id of the node that coordinates the job and resumes it after a restart.
+     */
+    private String coordinatorNode;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public ImportJob() { }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+        ImportJob importJob = (ImportJob) o;
+        return uuid.equals(importJob.getUuid());
+    }
+
+    @Override
+    public int hashCode() {
+        return uuid.hashCode();
+    }
+}
@@ -0,0 +1,49 @@
+package com.myflexbox.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.Hibernate;
+
+import java.util.Objects;
+
+/**
+ * Rows of a job's staged file detected as duplicates of earlier rows, stored once per job that merges
+ * duplicates. Kept apart from {@link ImportJob}, which is saved with every chunk.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "import_job_duplicates")
+public class ImportJobDuplicates {
+    @Id
+    private Long jobId;
+    private int rowCount;
+
+    /**
+     * The data row indexes in ascending order, each stored as varint of its distance to the previous one.
+     */
+    @Lob
+    private byte[] rowIndexes;
+
+    public ImportJobDuplicates() { }
+
+    public ImportJobDuplicates(Long jobId, int rowCount, byte[] rowIndexes) {
+        this.jobId = jobId;
+        this.rowCount = rowCount;
+        this.rowIndexes = rowIndexes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+        ImportJobDuplicates duplicates = (ImportJobDuplicates) o;
+        return jobId != null && Objects.equals(jobId, duplicates.jobId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(jobId);
+    }
+}
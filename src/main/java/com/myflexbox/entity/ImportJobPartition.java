@@ -0,0 +1,74 @@
+package com.myflexbox.entity;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * The ids one writer partition of a partitioned import inserted, stored with the job when it starts committing.
+ * Partitions commit one after another, so if the application stops halfway, the rows of the partitions already
+ * committed are found and deleted by these ranges on the next start.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "import_job_partition", indexes = {
+        @Index(name = "idx_import_job_partition_job", columnList = "jobId")
+})
+public class ImportJobPartition {
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    /**
+     * Key of equals and hashCode, assigned on construction and stored with the row, see {@link EntityKeys}.
+     */
+    @ColumnDefault("random_uuid()")
+    @Column(nullable = false, updatable = false)
+    @Setter(AccessLevel.NONE)
+    private UUID uuid = EntityKeys.newKey();
+
+    private Long jobId;
+    private int partitionIndex;
+
+    /**
+     * Ascending ranges of consecutive user ids, each stored as varint of its distance to the previous range
+     * followed by varint of its length.
+     */
+    @Lob
+    private byte[] userIdRanges;
+
+    /**
+     * Ascending ranges of consecutive address ids, encoded like the user id ranges.
+     */
+    @Lob
+    private byte[] addressIdRanges;
+
+    public ImportJobPartition() { }
+
+    public ImportJobPartition(Long jobId, int partitionIndex, byte[] userIdRanges, byte[] addressIdRanges) {
+        this.jobId = jobId;
+        this.partitionIndex = partitionIndex;
+        this.userIdRanges = userIdRanges;
+        this.addressIdRanges = addressIdRanges;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+        ImportJobPartition partition = (ImportJobPartition) o;
+        return uuid.equals(partition.getUuid());
+    }
+
+    @Override
+    public int hashCode() {
+        return uuid.hashCode();
+    }
+}
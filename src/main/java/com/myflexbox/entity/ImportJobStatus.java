@@ -0,0 +1,19 @@
+package com.myflexbox.entity;
+
+/**
+ * Lifecycle states of an {@link ImportJob}.
+ */
+public enum ImportJobStatus {
+    RUNNING,
+    /**
+     * All partitions of a partitioned import are written and being committed one after another.
+     */
+    COMMITTING,
+    COMPLETED,
+    FAILED,
+    /**
+     * The application stopped while a partitioned import was committing and its rows could not be deleted,
+     * so they may be partly imported. Such jobs are neither resumed nor reused and need to be checked.
+     */
+    INTERRUPTED
+}
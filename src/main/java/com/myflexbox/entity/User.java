@@ -1,24 +1,42 @@
 package com.myflexbox.entity;
 
+import com.myflexbox.service.SequenceIdAllocator;
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.Objects;
+import java.util.UUID;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter
 @Setter
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "idx_users_last_name", columnList = "lastName"))
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = SequenceIdAllocator.ALLOCATION_SIZE)
     private Long id;
+
+    /**
+     * Key of equals and hashCode, assigned on construction and stored with the row, see {@link EntityKeys}.
+     */
+    @ColumnDefault("random_uuid()")
+    @Column(nullable = false, updatable = false)
+    @Setter(AccessLevel.NONE)
+    private UUID uuid = EntityKeys.newKey();
+
     private String firstName;
     private String lastName;
 
-    @OneToOne(cascade = CascadeType.ALL)
+    @OneToOne(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JoinColumn(name = "address_id", referencedColumnName = "id")
     private Address address;
 
@@ -29,11 +47,11 @@ public class User {
         if (this == o) return true;
         if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
         User user = (User) o;
-        return id != null && Objects.equals(id, user.id);
+        return uuid.equals(user.getUuid());
     }
 
     @Override
     public int hashCode() {
-        return getClass().hashCode();
+        return uuid.hashCode();
     }
 }
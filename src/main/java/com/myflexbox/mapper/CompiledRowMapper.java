@@ -0,0 +1,130 @@
+package com.myflexbox.mapper;
+
+import com.myflexbox.entity.Address;
+import com.myflexbox.entity.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * A row-to-user function compiled once from the column mappings and transformation expressions of an import.
+ * Ignored columns are dropped at compile time and the remaining columns are fused into a single chain of
+ * lambdas, so mapping a row does no per-cell lookups, name comparisons or expression parsing.
+ */
+public final class CompiledRowMapper {
+
+    @FunctionalInterface
+    private interface RowStep {
+        void apply(String[] row, User user, Address address);
+    }
+
+    private static final RowStep NO_STEP = (row, user, address) -> { };
+
+    private final RowStep step;
+
+    private CompiledRowMapper(RowStep step) {
+        this.step = step;
+    }
+
+    /**
+     * Compiles the mappings and transformations of all columns into one row function.
+     *
+     * @param mappings   The column mappings, null or "Ignore" for columns that are not imported.
+     * @param transforms The transformation expression per column; may be null or shorter than the mappings.
+     * @return The compiled row mapper.
+     * @throws IllegalArgumentException if a transformation expression is not valid, or the full name is mapped
+     *                                  together with the first or last name.
+     */
+    public static CompiledRowMapper compile(List<CsvMapping> mappings, List<String> transforms) {
+        CsvColumnMapper.checkNameMappings(mappings);
+        RowStep step = NO_STEP;
+        for (int i = 0; i < mappings.size(); i++) {
+            CsvMapping mapping = mappings.get(i);
+            if (mapping == null || CsvColumnMapper.IGNORE.equals(mapping.getCsvColumnName())) {
+                continue;
+            }
+            String expression = transforms != null && i < transforms.size() ? transforms.get(i) : null;
+            step = andThen(step, columnStep(i, mapping, expression));
+        }
+        return new CompiledRowMapper(step);
+    }
+
+    private static RowStep columnStep(int index, CsvMapping mapping, String expression) {
+        if (TransformCompiler.isIdentity(expression)) {
+            return (row, user, address) -> {
+                if (index < row.length) {
+                    mapping.applyToUser(user, row[index]);
+                    mapping.applyToAddress(address, row[index]);
+                }
+            };
+        }
+        UnaryOperator<String> transform = TransformCompiler.compile(expression);
+        return (row, user, address) -> {
+            if (index < row.length) {
+                String value = transform.apply(row[index]);
+                mapping.applyToUser(user, value);
+                mapping.applyToAddress(address, value);
+            }
+        };
+    }
+
+    private static RowStep andThen(RowStep first, RowStep second) {
+        if (first == NO_STEP) {
+            return second;
+        }
+        return (row, user, address) -> {
+            first.apply(row, user, address);
+            second.apply(row, user, address);
+        };
+    }
+
+    /**
+     * Maps one CSV row.
+     *
+     * @param row The CSV row.
+     * @return The user with its address, or null if no field was populated.
+     */
+    public User map(String[] row) {
+        User user = new User();
+        Address address = new Address();
+        step.apply(row, user, address);
+        if (!isUserPopulated(user, address)) {
+            return null;
+        }
+        user.setAddress(address);
+        return user;
+    }
+
+    /**
+     * Maps a list of CSV rows, skipping rows without any populated field.
+     *
+     * @param rows The CSV rows.
+     * @return The mapped users.
+     */
+    public List<User> mapAll(List<String[]> rows) {
+        List<User> users = new ArrayList<>(rows.size());
+        for (String[] row : rows) {
+            User user = map(row);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Checks if a user and associated address have any populated fields.
+     *
+     * @param user the User object to check.
+     * @param address the Address object to check.
+     * @return true if either user or address have any fields populated, false otherwise.
+     */
+    private static boolean isUserPopulated(User user, Address address) {
+        return user.getFirstName() != null ||
+                user.getLastName() != null ||
+                address.getStreet() != null ||
+                address.getPostcode() != null ||
+                address.getCountry() != null;
+    }
+}
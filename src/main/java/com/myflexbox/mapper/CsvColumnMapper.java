@@ -3,25 +3,22 @@ package com.myflexbox.mapper;
 import com.myflexbox.entity.Address;
 import com.myflexbox.entity.User;
 import com.myflexbox.views.CustomNotification;
+import com.opencsv.CSVParser;
 import com.opencsv.CSVParserBuilder;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
-import com.opencsv.exceptions.CsvException;
 import com.vaadin.flow.component.HasValue;
 import com.vaadin.flow.component.combobox.ComboBox;
 import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.html.Div;
-import com.vaadin.flow.component.upload.receivers.MemoryBuffer;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.data.provider.Query;
 import com.vaadin.flow.shared.util.SharedUtil;
 import lombok.Getter;
 
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * Class responsible for handling CSV column mapping tasks.
@@ -29,10 +26,15 @@ import java.util.Objects;
  */
 public class CsvColumnMapper {
 
+    public static final char CSV_SEPARATOR = ';';
+    public static final String IGNORE = "Ignore";
+    public static final String FULL_NAME = "Full name";
+
     private boolean updatingMappings = false;
 
     @Getter
     private final List<ComboBox<CsvMapping>> columnMappingComboBoxes = new ArrayList<>();
+    private final List<TextField> columnTransformFields = new ArrayList<>();
 
     // Define the mappings for CSV columns
     private final List<CsvMapping> allMappings = List.of(
@@ -40,38 +42,145 @@ public class CsvColumnMapper {
             new CsvMapping("Last", User::setLastName, null),
             new CsvMapping("Address", null, Address::setStreet),
             new CsvMapping("ZIP", null, Address::setPostcode),
-            new CsvMapping("Country", null, Address::setCountry)
+            new CsvMapping("Country", null, Address::setCountry),
+            new CsvMapping(FULL_NAME, CsvColumnMapper::setFullName, null)
     );
     private final List<CsvMapping> selectedMappings = new ArrayList<>();
 
     /**
-     * Loads the uploaded CSV data into the provided grid.
+     * Creates one grid column per CSV header, each with a ComboBox for mapping the column.
+     * Mappings of a previously loaded file are discarded.
+     *
+     * @param grid The grid component to display the CSV content.
+     * @param headers The header row of the CSV file.
+     */
+    public void initializeColumns(Grid<String[]> grid, String[] headers) {
+        columnMappingComboBoxes.clear();
+        columnTransformFields.clear();
+        selectedMappings.clear();
+
+        grid.removeAllColumns();
+        for (int i = 0; i < headers.length; i++) {
+            final int columnIndex = i;
+            String header = headers[i];
+            SharedUtil.camelCaseToHumanFriendly(header);
+            grid.addColumn(str -> str[columnIndex])
+                    .setHeader(buildColumnHeader());
+        }
+    }
+
+    /**
+     * Creates the mapping ComboBox and transformation field for every CSV header without adding grid columns,
+     * for previews that lay out the mapping fields themselves. Mappings of a previously loaded file are discarded.
+     *
+     * @param headers The header row of the CSV file.
+     * @return one mapping header per CSV column, labelled with the column name.
+     */
+    public List<Div> initializeMappingHeaders(String[] headers) {
+        columnMappingComboBoxes.clear();
+        columnTransformFields.clear();
+        selectedMappings.clear();
+
+        List<Div> mappingHeaders = new ArrayList<>(headers.length);
+        for (String header : headers) {
+            Div mappingHeader = buildColumnHeader();
+            mappingHeader.addComponentAsFirst(new Span(header));
+            mappingHeaders.add(mappingHeader);
+        }
+        return mappingHeaders;
+    }
+
+    /**
+     * Replaces the grid content with an error column describing why the CSV could not be loaded.
      *
      * @param grid The grid component to display the CSV content.
-     * @param buffer The buffer containing the uploaded CSV content.
-     */
-    public void loadCsvToGrid(Grid<String[]> grid, MemoryBuffer buffer) {
-        try (CSVReader reader = new CSVReaderBuilder(
-                new InputStreamReader(buffer.getInputStream(), StandardCharsets.UTF_8))
-                .withCSVParser(new CSVParserBuilder().withSeparator(';').build())
-                .build()) {
-
-            List<String[]> entries = reader.readAll();
-            String[] headers = entries.get(0);
-
-            grid.removeAllColumns();
-            for (int i = 0; i < headers.length; i++) {
-                final int columnIndex = i;
-                String header = headers[i];
-                SharedUtil.camelCaseToHumanFriendly(header);
-                grid.addColumn(str -> str[columnIndex])
-                        .setHeader(buildColumnHeader());
+     * @param e The error raised while reading the CSV.
+     */
+    public void showLoadError(Grid<String[]> grid, Exception e) {
+        grid.removeAllColumns();
+        grid.addColumn(nop -> "Unable to load CSV: " + e.getMessage())
+                .setHeader("Failed to import CSV file");
+    }
+
+    /**
+     * Creates the parser used for all CSV files handled by the importer.
+     *
+     * @return a parser configured with the importer's separator.
+     */
+    public static CSVParser createParser() {
+        return new CSVParserBuilder().withSeparator(CSV_SEPARATOR).build();
+    }
+
+    /**
+     * Encodes the selected mappings as a list of target names, one per CSV column.
+     *
+     * @param mappings The column mappings for the CSV data.
+     * @return the mapping names separated by the CSV separator.
+     */
+    public String encodeMappings(List<CsvMapping> mappings) {
+        StringBuilder encoded = new StringBuilder();
+        for (CsvMapping mapping : mappings) {
+            if (!encoded.isEmpty()) {
+                encoded.append(CSV_SEPARATOR);
             }
-            grid.setItems(entries.subList(1, entries.size()));
-        } catch (IOException | CsvException e) {
-            grid.addColumn(nop -> "Unable to load CSV: " + e.getMessage())
-                    .setHeader("Failed to import CSV file");
+            encoded.append(mapping == null ? IGNORE : mapping.getCsvColumnName());
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Restores the mappings previously encoded with {@link #encodeMappings(List)}.
+     *
+     * @param encoded The encoded mapping names.
+     * @return the column mappings, in CSV column order.
+     */
+    public List<CsvMapping> decodeMappings(String encoded) {
+        List<CsvMapping> mappings = new ArrayList<>();
+        for (String columnName : encoded.split(String.valueOf(CSV_SEPARATOR), -1)) {
+            mappings.add(findMapping(columnName));
+        }
+        return mappings;
+    }
+
+    /**
+     * Encodes the transformation expressions of all columns, one per line.
+     *
+     * @param transforms The expression per column, may be null.
+     * @return the encoded expressions, or an empty string if no column has one.
+     */
+    public String encodeTransforms(List<String> transforms) {
+        if (transforms == null || transforms.stream().allMatch(TransformCompiler::isIdentity)) {
+            return "";
+        }
+        return transforms.stream()
+                .map(transform -> transform == null ? "" : transform.replaceAll("[\\r\\n]+", " "))
+                .collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * Restores the transformation expressions previously encoded with {@link #encodeTransforms(List)}.
+     *
+     * @param encoded The encoded expressions.
+     * @return the expression per column, empty if no column has one.
+     */
+    public List<String> decodeTransforms(String encoded) {
+        return encoded == null || encoded.isEmpty() ? List.of() : List.of(encoded.split("\n", -1));
+    }
+
+    /**
+     * Looks up one of the available mappings by its name.
+     *
+     * @param columnName The name of the mapping.
+     * @return the matching mapping, or an "Ignore" mapping.
+     */
+    public CsvMapping findMapping(String columnName) {
+        if (IGNORE.equals(columnName)) {
+            return new CsvMapping(IGNORE, null, null);
         }
+        return allMappings.stream()
+                .filter(mapping -> mapping.getCsvColumnName().equals(columnName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown column mapping: " + columnName));
     }
 
     /**
@@ -106,9 +215,39 @@ public class CsvColumnMapper {
             CustomNotification.show("Please complete the mapping!");
             return false;
         }
+
+        try {
+            checkNameMappings(comboBoxes.stream().map(ComboBox::getValue).toList());
+        } catch (IllegalArgumentException e) {
+            CustomNotification.show(e.getMessage());
+            return false;
+        }
         return true;
     }
 
+    /**
+     * Checks that the name is mapped either as full name or as first and last name, as the full name
+     * overwrites both and would otherwise be overwritten by them depending on the column order.
+     *
+     * @param mappings The column mappings; null entries are ignored.
+     * @throws IllegalArgumentException if "Full name" is mapped together with "First" or "Last".
+     */
+    public static void checkNameMappings(List<CsvMapping> mappings) {
+        boolean fullName = false;
+        boolean firstOrLast = false;
+        for (CsvMapping mapping : mappings) {
+            if (mapping == null) {
+                continue;
+            }
+            String name = mapping.getCsvColumnName();
+            fullName |= FULL_NAME.equals(name);
+            firstOrLast |= "First".equals(name) || "Last".equals(name);
+        }
+        if (fullName && firstOrLast) {
+            throw new IllegalArgumentException("\"Full name\" cannot be mapped together with \"First\" or \"Last\"!");
+        }
+    }
+
     /**
      * Transforms the CSV rows into user entities based on the provided mappings.
      *
@@ -117,30 +256,24 @@ public class CsvColumnMapper {
      * @return A list of user entities.
      */
     public List<User> mapCsvToUsers(List<String[]> entries, List<CsvMapping> mappings) {
-        List<User> users = new ArrayList<>();
-        for (String[] row : entries) {
-            User user = new User();
-            Address address = new Address();
-
-            for (int i = 0; i < row.length; i++) {
-                CsvMapping mapping = mappings.get(i);
-                String value = row[i];
-                if (mapping != null && !mapping.getCsvColumnName().equals("Ignore")) {
-                    mapping.applyToUser(user, value);
-                    mapping.applyToAddress(address, value);
-                }
-            }
+        return mapCsvToUsers(entries, mappings, null);
+    }
 
-            if (isUserPopulated(user, address)) {
-                user.setAddress(address);
-                users.add(user);
-            }
-        }
-        return users;
+    /**
+     * Transforms the CSV rows into user entities based on the provided mappings and per-column transformations.
+     *
+     * @param entries CSV rows to be transformed.
+     * @param mappings The column mappings for the CSV data.
+     * @param transforms The transformation expression per column, or null for none.
+     * @return A list of user entities.
+     */
+    public List<User> mapCsvToUsers(List<String[]> entries, List<CsvMapping> mappings, List<String> transforms) {
+        return CompiledRowMapper.compile(mappings, transforms).mapAll(entries);
     }
 
     /**
-     * Builds a column header containing a ComboBox for CSV column mapping.
+     * Builds a column header containing a ComboBox for CSV column mapping and a field for an optional
+     * transformation expression.
      *
      * @return a Div containing a ComboBox for selecting the mapping of a CSV column.
      */
@@ -148,15 +281,49 @@ public class CsvColumnMapper {
         Div container = new Div();
         ComboBox<CsvMapping> comboBox = new ComboBox<>();
         createColumnMappingComboBoxes(comboBox); // Initialize ComboBox
-        container.add(comboBox);
+        container.add(comboBox, createTransformField());
         return container;
     }
 
+    /**
+     * Creates the field for a column's transformation expression, validated as it is typed.
+     *
+     * @return the transformation field.
+     */
+    private TextField createTransformField() {
+        TextField transformField = new TextField();
+        transformField.setPlaceholder("e.g. trim | upper");
+        transformField.setClearButtonVisible(true);
+        transformField.addValueChangeListener(event -> {
+            try {
+                TransformCompiler.compile(event.getValue());
+                transformField.setInvalid(false);
+            } catch (IllegalArgumentException e) {
+                transformField.setErrorMessage(e.getMessage());
+                transformField.setInvalid(true);
+            }
+        });
+        columnTransformFields.add(transformField);
+        return transformField;
+    }
+
+    /**
+     * Collects the transformation expressions entered for the columns.
+     *
+     * @return the expression per column, empty for columns without one.
+     */
+    public List<String> getColumnTransforms() {
+        return columnTransformFields.stream()
+                .map(TextField::getValue)
+                .toList();
+    }
+
     /**
      * Resets the column mapping by clearing the ComboBox selections.
      */
     public void resetMapping() {
         columnMappingComboBoxes.forEach(HasValue::clear);
+        columnTransformFields.forEach(HasValue::clear);
     }
 
     /**
@@ -182,6 +349,23 @@ public class CsvColumnMapper {
         columnMappingComboBoxes.add(comboBox);
     }
 
+    /**
+     * Splits a full name on its last space into first and last name.
+     *
+     * @param user the User to populate.
+     * @param fullName the full name, e.g. "John Doe".
+     */
+    private static void setFullName(User user, String fullName) {
+        String name = fullName.trim();
+        int lastSpace = name.lastIndexOf(' ');
+        if (lastSpace < 0) {
+            user.setLastName(name);
+            return;
+        }
+        user.setFirstName(name.substring(0, lastSpace).trim());
+        user.setLastName(name.substring(lastSpace + 1));
+    }
+
     /**
      * Updates the available mappings for all ComboBoxes, ensuring that a mapping
      * is not used in more than one column. If a mapping is already selected, it's excluded
@@ -217,19 +401,4 @@ public class CsvColumnMapper {
 
         updatingMappings = false;
     }
-
-    /**
-     * Checks if a user and associated address have any populated fields.
-     *
-     * @param user the User object to check.
-     * @param address the Address object to check.
-     * @return true if either user or address have any fields populated, false otherwise.
-     */
-    private boolean isUserPopulated(User user, Address address) {
-        return user.getFirstName() != null ||
-                user.getLastName() != null ||
-                address.getStreet() != null ||
-                address.getPostcode() != null ||
-                address.getCountry() != null;
-    }
 }
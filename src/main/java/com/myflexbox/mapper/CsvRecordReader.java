@@ -0,0 +1,93 @@
+package com.myflexbox.mapper;
+
+import com.opencsv.CSVParser;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads CSV records from a byte stream while tracking the byte offset of the next record.
+ * Unlike {@link com.opencsv.CSVReader}, which buffers ahead through a {@link java.io.Reader}, the offset reported
+ * here always points at a record boundary, so an import can checkpoint it and later seek straight back to it.
+ */
+public class CsvRecordReader implements Closeable {
+
+    private final InputStream inputStream;
+    private final CSVParser parser = CsvColumnMapper.createParser();
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream(256);
+    private long offset;
+
+    /**
+     * Creates a reader over a stream that is already positioned at a record boundary.
+     *
+     * @param inputStream The stream to read from.
+     * @param startOffset The byte offset of the stream's first byte within the file.
+     */
+    public CsvRecordReader(InputStream inputStream, long startOffset) {
+        this.inputStream = new BufferedInputStream(inputStream, 64 * 1024);
+        this.offset = startOffset;
+    }
+
+    /**
+     * Reads the next record, following quoted fields across line breaks.
+     *
+     * @return The fields of the record, or null at the end of the stream.
+     * @throws IOException if the stream cannot be read or ends inside a quoted field.
+     */
+    public String[] readRecord() throws IOException {
+        String[] result = null;
+        do {
+            String line = readLine();
+            if (line == null) {
+                if (parser.isPending()) {
+                    throw new IOException("Unterminated quoted field at byte offset " + offset);
+                }
+                return null;
+            }
+            String[] fields = parser.parseLineMulti(line);
+            result = result == null ? fields : concat(result, fields);
+        } while (parser.isPending());
+        return result;
+    }
+
+    /**
+     * @return The byte offset of the next record within the file.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    private String readLine() throws IOException {
+        lineBuffer.reset();
+        int b;
+        while ((b = inputStream.read()) != -1) {
+            offset++;
+            if (b == '\n') {
+                return decodeLine();
+            }
+            lineBuffer.write(b);
+        }
+        return lineBuffer.size() == 0 ? null : decodeLine();
+    }
+
+    private String decodeLine() {
+        String line = lineBuffer.toString(StandardCharsets.UTF_8);
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    private static String[] concat(String[] first, String[] second) {
+        String[] combined = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, combined, first.length, second.length);
+        return combined;
+    }
+}
@@ -0,0 +1,39 @@
+package com.myflexbox.repository;
+
+import com.myflexbox.entity.BulkLoadLock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface BulkLoadLockRepository extends CrudRepository<BulkLoadLock, Long> {
+
+    /**
+     * Takes the lock if no node holds it. Of several nodes acquiring it at the same time exactly one updates the row.
+     *
+     * @return 1 if the lock was taken, 0 otherwise.
+     */
+    @Transactional
+    @Modifying
+    @Query("update BulkLoadLock l set l.owner = :owner, l.acquiredAt = :now where l.id = :id and l.owner is null")
+    int acquire(@Param("id") Long id, @Param("owner") String owner, @Param("now") LocalDateTime now);
+
+    /**
+     * Takes the lock over from a node whose bulk load is known to be interrupted.
+     *
+     * @return 1 if the lock was taken over, 0 if it is no longer held by the previous owner.
+     */
+    @Transactional
+    @Modifying
+    @Query("update BulkLoadLock l set l.owner = :owner, l.acquiredAt = :now where l.id = :id and l.owner = :previousOwner")
+    int takeOver(@Param("id") Long id, @Param("previousOwner") String previousOwner, @Param("owner") String owner,
+                 @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("update BulkLoadLock l set l.owner = null, l.acquiredAt = null where l.id = :id and l.owner = :owner")
+    int release(@Param("id") Long id, @Param("owner") String owner);
+}
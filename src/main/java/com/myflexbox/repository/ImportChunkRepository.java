@@ -0,0 +1,116 @@
+package com.myflexbox.repository;
+
+import com.myflexbox.entity.ImportChunk;
+import com.myflexbox.entity.ImportChunkStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface ImportChunkRepository extends CrudRepository<ImportChunk, Long> {
+
+    boolean existsByJobId(Long jobId);
+
+    long countByJobId(Long jobId);
+
+    long countByJobIdAndStatusNot(Long jobId, ImportChunkStatus status);
+
+    @Query("select coalesce(sum(c.rowCount), 0) from ImportChunk c where c.jobId = :jobId")
+    long sumRowCount(@Param("jobId") Long jobId);
+
+    @Query("select coalesce(sum(c.rowCount), 0) from ImportChunk c where c.jobId = :jobId "
+            + "and c.status = com.myflexbox.entity.ImportChunkStatus.DONE")
+    long sumDoneRowCount(@Param("jobId") Long jobId);
+
+    @Query("select coalesce(sum(c.usersImported), 0) from ImportChunk c where c.jobId = :jobId")
+    long sumUsersImported(@Param("jobId") Long jobId);
+
+    /**
+     * Finds chunks that are pending or whose lease expired, oldest first.
+     */
+    @Query("select c.id from ImportChunk c where c.attempts < :maxAttempts "
+            + "and (c.status = com.myflexbox.entity.ImportChunkStatus.PENDING "
+            + "or (c.status = com.myflexbox.entity.ImportChunkStatus.CLAIMED and c.leaseExpiresAt < :now)) "
+            + "order by c.id")
+    List<Long> findClaimableIds(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts,
+                                Pageable pageable);
+
+    /**
+     * Counts the chunks of a job that are left unfinished after being claimed the maximum number of times.
+     */
+    @Query("select count(c) from ImportChunk c where c.jobId = :jobId and c.attempts >= :maxAttempts "
+            + "and (c.status = com.myflexbox.entity.ImportChunkStatus.PENDING "
+            + "or (c.status = com.myflexbox.entity.ImportChunkStatus.CLAIMED and c.leaseExpiresAt < :now))")
+    long countExhausted(@Param("jobId") Long jobId, @Param("now") LocalDateTime now,
+                        @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * Takes the lease of a chunk if it is still pending or its lease expired.
+     * Of several nodes claiming the same chunk exactly one updates the row.
+     *
+     * @return 1 if the lease was taken, 0 otherwise.
+     */
+    @Transactional
+    @Modifying
+    @Query("update ImportChunk c set c.status = com.myflexbox.entity.ImportChunkStatus.CLAIMED, c.owner = :owner, "
+            + "c.leaseExpiresAt = :leaseExpiresAt, c.attempts = c.attempts + 1, c.updatedAt = :now "
+            + "where c.id = :id and c.attempts < :maxAttempts "
+            + "and (c.status = com.myflexbox.entity.ImportChunkStatus.PENDING "
+            + "or (c.status = com.myflexbox.entity.ImportChunkStatus.CLAIMED and c.leaseExpiresAt < :now))")
+    int claim(@Param("id") Long id, @Param("owner") String owner, @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt,
+              @Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * Extends the leases the given node still holds.
+     *
+     * @return The number of leases extended.
+     */
+    @Transactional
+    @Modifying
+    @Query("update ImportChunk c set c.leaseExpiresAt = :leaseExpiresAt "
+            + "where c.id in :ids and c.owner = :owner and c.status = com.myflexbox.entity.ImportChunkStatus.CLAIMED")
+    int renewLeases(@Param("ids") Collection<Long> ids, @Param("owner") String owner,
+                    @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt);
+
+    /**
+     * Marks a chunk done if the given node still holds its lease. Runs in the caller's transaction,
+     * which imports the chunk's users.
+     *
+     * @return 1 if the chunk was marked done, 0 if the lease was lost.
+     */
+    @Modifying
+    @Query("update ImportChunk c set c.status = com.myflexbox.entity.ImportChunkStatus.DONE, "
+            + "c.usersImported = :usersImported, c.leaseExpiresAt = null, c.lastError = null, c.updatedAt = :now "
+            + "where c.id = :id and c.owner = :owner and c.status = com.myflexbox.entity.ImportChunkStatus.CLAIMED")
+    int markDone(@Param("id") Long id, @Param("owner") String owner, @Param("usersImported") long usersImported,
+                 @Param("now") LocalDateTime now);
+
+    /**
+     * Gives a failed chunk back, so it is claimed again.
+     */
+    @Transactional
+    @Modifying
+    @Query("update ImportChunk c set c.status = com.myflexbox.entity.ImportChunkStatus.PENDING, c.owner = null, "
+            + "c.leaseExpiresAt = null, c.lastError = :error, c.updatedAt = :now "
+            + "where c.id = :id and c.owner = :owner and c.status = com.myflexbox.entity.ImportChunkStatus.CLAIMED")
+    int release(@Param("id") Long id, @Param("owner") String owner, @Param("error") String error,
+                @Param("now") LocalDateTime now);
+
+    /**
+     * Gives the unfinished chunks of a job that is retried their attempts back.
+     */
+    @Transactional
+    @Modifying
+    @Query("update ImportChunk c set c.attempts = 0 "
+            + "where c.jobId = :jobId and c.status <> com.myflexbox.entity.ImportChunkStatus.DONE")
+    int resetAttempts(@Param("jobId") Long jobId);
+
+    @Query("select c.lastError from ImportChunk c where c.jobId = :jobId and c.lastError is not null order by c.updatedAt desc")
+    List<String> findLastErrors(@Param("jobId") Long jobId, Pageable pageable);
+}
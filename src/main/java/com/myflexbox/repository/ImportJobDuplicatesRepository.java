@@ -0,0 +1,7 @@
+package com.myflexbox.repository;
+
+import com.myflexbox.entity.ImportJobDuplicates;
+import org.springframework.data.repository.CrudRepository;
+
+public interface ImportJobDuplicatesRepository extends CrudRepository<ImportJobDuplicates, Long> {
+}
@@ -0,0 +1,20 @@
+package com.myflexbox.repository;
+
+import com.myflexbox.entity.ImportJobPartition;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface ImportJobPartitionRepository extends CrudRepository<ImportJobPartition, Long> {
+
+    List<ImportJobPartition> findByJobId(Long jobId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ImportJobPartition p where p.jobId = :jobId")
+    int deleteByJobId(@Param("jobId") Long jobId);
+}
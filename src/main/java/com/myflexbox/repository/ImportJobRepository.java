@@ -0,0 +1,18 @@
+package com.myflexbox.repository;
+
+import com.myflexbox.entity.ImportJob;
+import com.myflexbox.entity.ImportJobStatus;
+import org.springframework.data.repository.CrudRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ImportJobRepository extends CrudRepository<ImportJob, Long> {
+
+    List<ImportJob> findByStatus(ImportJobStatus status);
+
+    Optional<ImportJob> findFirstBySourceHashAndColumnMappingsAndColumnTransformsAndMergeDuplicatesAndStatusInOrderByIdDesc(
+            String sourceHash, String columnMappings, String columnTransforms, boolean mergeDuplicates,
+            Collection<ImportJobStatus> statuses);
+}
@@ -0,0 +1,12 @@
+package com.myflexbox.repository;
+
+/**
+ * Read-only projection of a user without its address, so lookups by name never touch the address table.
+ */
+public interface UserNameSummary {
+    Long getId();
+
+    String getFirstName();
+
+    String getLastName();
+}
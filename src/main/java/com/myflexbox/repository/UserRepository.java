@@ -1,7 +1,53 @@
 package com.myflexbox.repository;
 
 import com.myflexbox.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
-public interface UserRepository extends CrudRepository<User, Long> {
+import java.util.Collection;
+import java.util.List;
+
+public interface UserRepository extends CrudRepository<User, Long>, UserSummaryPaging {
+
+    /**
+     * Pages through users with the given last name, reading only user columns (no address join).
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    Slice<UserNameSummary> findByLastName(String lastName, Pageable pageable);
+
+    /**
+     * Pages through users living at the given postcode, served by the postcode index.
+     */
+    @Query("select u.id as id, u.firstName as firstName, u.lastName as lastName, "
+            + "a.street as street, a.postcode as postcode, a.country as country "
+            + "from User u join u.address a where a.postcode = :postcode")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    Slice<UserSummary> findSummariesByPostcode(@Param("postcode") String postcode, Pageable pageable);
+
+    /**
+     * Pages through users living in the given country, served by the country index.
+     */
+    @Query("select u.id as id, u.firstName as firstName, u.lastName as lastName, "
+            + "a.street as street, a.postcode as postcode, a.country as country "
+            + "from User u join u.address a where a.country = :country")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    Slice<UserSummary> findSummariesByCountry(@Param("country") String country, Pageable pageable);
+
+    /**
+     * Reads the users living at any of the given postcodes, used to look for duplicates of imported rows.
+     */
+    @Query("select u.id as id, u.firstName as firstName, u.lastName as lastName, "
+            + "a.street as street, a.postcode as postcode, a.country as country "
+            + "from User u join u.address a where a.postcode in :postcodes")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    List<UserSummary> findSummariesByPostcodeIn(@Param("postcodes") Collection<String> postcodes);
 }
@@ -0,0 +1,18 @@
+package com.myflexbox.repository;
+
+/**
+ * Read-only projection of a user joined with its address, used for reads that do not need managed entities.
+ */
+public interface UserSummary {
+    Long getId();
+
+    String getFirstName();
+
+    String getLastName();
+
+    String getStreet();
+
+    String getPostcode();
+
+    String getCountry();
+}
@@ -0,0 +1,20 @@
+package com.myflexbox.repository;
+
+import java.util.List;
+
+/**
+ * Keyset pagination over users and their addresses, implemented with the entity manager so the JDBC fetch size
+ * can follow the page size instead of being fixed in a query hint.
+ */
+public interface UserSummaryPaging {
+
+    /**
+     * Returns the next page of users with an id greater than the last one already read. Unlike offset paging
+     * the cost per page stays constant deep into the table. The whole page is fetched in one round trip.
+     *
+     * @param lastId   The id of the last user already read, 0 to start with the first one.
+     * @param pageSize The maximum number of users to return, also used as JDBC fetch size.
+     * @return the users of the page, ordered by id.
+     */
+    List<UserSummary> findSummariesAfter(Long lastId, int pageSize);
+}
@@ -0,0 +1,30 @@
+package com.myflexbox.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Implementation of {@link UserSummaryPaging}, picked up by Spring Data as fragment of {@link UserRepository}.
+ */
+class UserSummaryPagingImpl implements UserSummaryPaging {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<UserSummary> findSummariesAfter(Long lastId, int pageSize) {
+        List<UserSummaryRow> rows = entityManager.createQuery("select new " + UserSummaryRow.class.getName()
+                        + "(u.id, u.firstName, u.lastName, a.street, a.postcode, a.country) "
+                        + "from User u left join u.address a where u.id > :lastId order by u.id", UserSummaryRow.class)
+                .setParameter("lastId", lastId)
+                .setMaxResults(pageSize)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, pageSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultList();
+        return Collections.unmodifiableList(rows);
+    }
+}
@@ -0,0 +1,18 @@
+package com.myflexbox.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * {@link UserSummary} instantiated by the constructor expression of {@link UserSummaryPagingImpl}.
+ */
+@Getter
+@AllArgsConstructor
+public class UserSummaryRow implements UserSummary {
+    private final Long id;
+    private final String firstName;
+    private final String lastName;
+    private final String street;
+    private final String postcode;
+    private final String country;
+}
@@ -0,0 +1,194 @@
+package com.myflexbox.service;
+
+import com.myflexbox.beans.AdaptiveSizingProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tunes the chunk size and JDBC batch size of chunked imports from chunk to chunk, AIMD-style.
+ * After every chunk the parse, map and commit times are compared with the targets, together with the share
+ * of the chunk's time spent in garbage collection and the heap usage. A chunk within all targets grows both
+ * sizes additively as long as the rows per second do not drop; a chunk missing a target shrinks them
+ * multiplicatively. The decisions are published as Micrometer metrics:
+ * {@code csvimporter.import.chunk.size} and {@code csvimporter.import.batch.size} gauges,
+ * a {@code csvimporter.import.chunk.stage} timer per stage and a {@code csvimporter.import.sizing.decisions}
+ * counter tagged with the decision and its reason.
+ */
+@Slf4j
+@Component
+public class AdaptiveChunkController {
+
+    /**
+     * Share of the previous chunk's throughput below which a chunk within all targets no longer grows the sizes.
+     */
+    private static final double THROUGHPUT_TOLERANCE = 0.9;
+
+    private final AdaptiveSizingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger currentChunkSize = new AtomicInteger();
+    private final AtomicInteger currentBatchSize = new AtomicInteger();
+    private final Timer parseTimer;
+    private final Timer mapTimer;
+    private final Timer commitTimer;
+    private final List<GarbageCollectorMXBean> garbageCollectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    public AdaptiveChunkController(AdaptiveSizingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("csvimporter.import.chunk.size", currentChunkSize, AtomicInteger::get)
+                .description("Rows per chunk chosen for the next chunk of the latest import")
+                .register(meterRegistry);
+        Gauge.builder("csvimporter.import.batch.size", currentBatchSize, AtomicInteger::get)
+                .description("JDBC batch size chosen for the next chunk of the latest import")
+                .register(meterRegistry);
+        this.parseTimer = stageTimer("parse");
+        this.mapTimer = stageTimer("map");
+        this.commitTimer = stageTimer("commit");
+    }
+
+    /**
+     * Checks whether the sizes are tuned at all.
+     *
+     * @return true if adaptive sizing is enabled.
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Starts the sizing of one import.
+     *
+     * @param initialChunkSize The chunk size of the first chunk, e.g. the one the job stopped with.
+     * @return The sizing, to be used by the importing thread only.
+     */
+    public Sizing start(int initialChunkSize) {
+        int chunkSize = properties.isEnabled()
+                ? clamp(initialChunkSize, properties.getMinChunkSize(), properties.getMaxChunkSize())
+                : initialChunkSize;
+        return new Sizing(chunkSize, properties.getInitialBatchSize());
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("csvimporter.import.chunk.stage")
+                .description("Time spent per chunk in each import stage")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    private long totalGcMillis() {
+        return garbageCollectors.stream().mapToLong(collector -> Math.max(collector.getCollectionTime(), 0)).sum();
+    }
+
+    private double heapUsage() {
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        long max = heap.getMax() > 0 ? heap.getMax() : heap.getCommitted();
+        return (double) heap.getUsed() / max;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * The chunk and batch sizes of one import, adjusted after every chunk.
+     */
+    public final class Sizing {
+
+        private int chunkSize;
+        private int batchSize;
+        private double previousRowsPerSecond;
+        private long previousGcMillis = totalGcMillis();
+
+        private Sizing(int chunkSize, int batchSize) {
+            this.chunkSize = chunkSize;
+            this.batchSize = batchSize;
+            publish();
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        /**
+         * Records the times of a processed chunk and picks the sizes of the next one.
+         *
+         * @param rows        The number of CSV rows in the chunk.
+         * @param parseNanos  The time spent reading and parsing the rows.
+         * @param mapNanos    The time spent mapping the rows to users.
+         * @param commitNanos The time spent saving the users and committing.
+         */
+        public void record(int rows, long parseNanos, long mapNanos, long commitNanos) {
+            parseTimer.record(parseNanos, TimeUnit.NANOSECONDS);
+            mapTimer.record(mapNanos, TimeUnit.NANOSECONDS);
+            commitTimer.record(commitNanos, TimeUnit.NANOSECONDS);
+
+            long gcMillis = totalGcMillis();
+            long gcDeltaMillis = gcMillis - previousGcMillis;
+            previousGcMillis = gcMillis;
+            if (!properties.isEnabled() || rows == 0) {
+                return;
+            }
+
+            long totalNanos = Math.max(parseNanos + mapNanos + commitNanos, 1);
+            double gcTimeRatio = gcDeltaMillis * 1_000_000.0 / totalNanos;
+            double rowsPerSecond = rows * 1_000_000_000.0 / totalNanos;
+
+            String reason = null;
+            if (commitNanos > TimeUnit.MILLISECONDS.toNanos(properties.getTargetCommitMillis())) {
+                reason = "commit_latency";
+            } else if (gcTimeRatio > properties.getMaxGcTimeRatio()) {
+                reason = "gc_time";
+            } else if (heapUsage() > properties.getMaxHeapUsage()) {
+                reason = "heap_usage";
+            }
+
+            if (reason != null) {
+                chunkSize = clamp((int) (chunkSize * properties.getDecreaseFactor()),
+                        properties.getMinChunkSize(), properties.getMaxChunkSize());
+                if (reason.equals("commit_latency")) {
+                    batchSize = clamp((int) (batchSize * properties.getDecreaseFactor()),
+                            properties.getMinBatchSize(), properties.getMaxBatchSize());
+                }
+                decided("decrease", reason);
+            } else if (rowsPerSecond >= previousRowsPerSecond * THROUGHPUT_TOLERANCE) {
+                chunkSize = clamp(chunkSize + properties.getChunkSizeIncrement(),
+                        properties.getMinChunkSize(), properties.getMaxChunkSize());
+                batchSize = clamp(batchSize + properties.getBatchSizeIncrement(),
+                        properties.getMinBatchSize(), properties.getMaxBatchSize());
+                decided("increase", "within_targets");
+            } else {
+                decided("hold", "throughput_drop");
+            }
+            previousRowsPerSecond = rowsPerSecond;
+            publish();
+            log.debug("Chunk of {} rows at {} rows/s, gc {}%, next chunk {} rows in batches of {}",
+                    rows, Math.round(rowsPerSecond), Math.round(gcTimeRatio * 100), chunkSize, batchSize);
+        }
+
+        private void decided(String decision, String reason) {
+            meterRegistry.counter("csvimporter.import.sizing.decisions", "decision", decision, "reason", reason)
+                    .increment();
+        }
+
+        private void publish() {
+            currentChunkSize.set(chunkSize);
+            currentBatchSize.set(batchSize);
+        }
+    }
+}
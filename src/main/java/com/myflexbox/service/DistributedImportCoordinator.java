@@ -0,0 +1,169 @@
+package com.myflexbox.service;
+
+import com.myflexbox.beans.ClusterProperties;
+import com.myflexbox.entity.ImportChunk;
+import com.myflexbox.entity.ImportChunkStatus;
+import com.myflexbox.entity.ImportJob;
+import com.myflexbox.mapper.CsvRecordReader;
+import com.myflexbox.repository.ImportChunkRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Coordinates imports split into chunks for the workers of all nodes.
+ * The coordinating node, usually the one the file was uploaded to, only splits the staged file into chunks
+ * and waits for the {@link ImportChunkWorker}s of any node to import them.
+ */
+@Slf4j
+@Service
+public class DistributedImportCoordinator {
+
+    /**
+     * Length of a chunk's error quoted in the job's error message.
+     */
+    private static final int MAX_ERROR_LENGTH = 150;
+
+    private final ImportChunkRepository importChunkRepository;
+    private final ClusterProperties clusterProperties;
+    private final TransactionTemplate transactionTemplate;
+
+    public DistributedImportCoordinator(ImportChunkRepository importChunkRepository,
+                                        ClusterProperties clusterProperties,
+                                        TransactionTemplate transactionTemplate) {
+        this.importChunkRepository = importChunkRepository;
+        this.clusterProperties = clusterProperties;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Checks whether fresh imports are split into chunks for the cluster.
+     *
+     * @return true if the cluster mode is enabled.
+     */
+    public boolean isEnabled() {
+        return clusterProperties.isEnabled();
+    }
+
+    /**
+     * Checks whether a job was split into chunks for the cluster, which then also have to finish it.
+     *
+     * @param job The import job.
+     * @return true if chunks exist for the job.
+     */
+    public boolean hasChunks(ImportJob job) {
+        return importChunkRepository.existsByJobId(job.getId());
+    }
+
+    /**
+     * Splits the job's staged file into chunks unless that was done before, and waits until all chunks are
+     * imported. The job's counters are updated with the totals of its chunks.
+     * Chunks are only imported under their leases, so a job may be waited for by more than one node.
+     *
+     * @param job        The import job.
+     * @param onProgress Called with the number of rows imported so far whenever it changed while waiting.
+     * @throws IllegalStateException if a chunk failed too often or the cluster mode is disabled.
+     */
+    public void coordinate(ImportJob job, LongConsumer onProgress) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Import job " + job.getId()
+                    + " was split into chunks, enable csvimporter.cluster to finish it");
+        }
+        if (hasChunks(job)) {
+            importChunkRepository.resetAttempts(job.getId());
+        } else {
+            plan(job);
+        }
+        awaitChunks(job, onProgress);
+
+        job.setChunksCommitted((int) importChunkRepository.countByJobId(job.getId()));
+        job.setRowsCommitted(importChunkRepository.sumRowCount(job.getId()));
+        job.setUsersImported(importChunkRepository.sumUsersImported(job.getId()));
+        try {
+            job.setByteOffset(Files.size(Path.of(job.getStagedPath())));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read staged file " + job.getStagedPath(), e);
+        }
+    }
+
+    /**
+     * Scans the staged file for the byte offset of every chunk's first row and saves the chunks.
+     * Records are parsed while scanning, so quoted values spanning lines never end up split between chunks.
+     */
+    private void plan(ImportJob job) {
+        Path stagedPath = Path.of(job.getStagedPath());
+        List<ImportChunk> chunks = new ArrayList<>();
+        try (InputStream inputStream = Files.newInputStream(stagedPath);
+             CsvRecordReader reader = new CsvRecordReader(inputStream, 0)) {
+
+            reader.readRecord(); // Skip the header row
+            long startOffset = reader.getOffset();
+            long firstRowIndex = 0;
+            int rowCount = 0;
+            while (reader.readRecord() != null) {
+                rowCount++;
+                if (rowCount == clusterProperties.getChunkRows()) {
+                    chunks.add(newChunk(job, chunks.size(), startOffset, firstRowIndex, rowCount));
+                    startOffset = reader.getOffset();
+                    firstRowIndex += rowCount;
+                    rowCount = 0;
+                }
+            }
+            if (rowCount > 0) {
+                chunks.add(newChunk(job, chunks.size(), startOffset, firstRowIndex, rowCount));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read staged file " + stagedPath, e);
+        }
+        transactionTemplate.executeWithoutResult(status -> importChunkRepository.saveAll(chunks));
+        log.info("Split import job {} of {} into {} chunks", job.getId(), job.getFileName(), chunks.size());
+    }
+
+    private ImportChunk newChunk(ImportJob job, int chunkIndex, long startOffset, long firstRowIndex, int rowCount) {
+        ImportChunk chunk = new ImportChunk();
+        chunk.setJobId(job.getId());
+        chunk.setChunkIndex(chunkIndex);
+        chunk.setStartOffset(startOffset);
+        chunk.setFirstRowIndex(firstRowIndex);
+        chunk.setRowCount(rowCount);
+        chunk.setStatus(ImportChunkStatus.PENDING);
+        chunk.setUpdatedAt(LocalDateTime.now());
+        return chunk;
+    }
+
+    private void awaitChunks(ImportJob job, LongConsumer onProgress) {
+        long reportedRows = 0;
+        while (importChunkRepository.countByJobIdAndStatusNot(job.getId(), ImportChunkStatus.DONE) > 0) {
+            long doneRows = importChunkRepository.sumDoneRowCount(job.getId());
+            if (doneRows != reportedRows) {
+                onProgress.accept(doneRows);
+                reportedRows = doneRows;
+            }
+            if (importChunkRepository.countExhausted(job.getId(), LocalDateTime.now(), clusterProperties.getMaxAttempts()) > 0) {
+                String lastError = importChunkRepository.findLastErrors(job.getId(), PageRequest.of(0, 1)).stream()
+                        .findFirst()
+                        .map(error -> error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error)
+                        .orElse("lease expired");
+                throw new IllegalStateException("A chunk of import job " + job.getId() + " failed "
+                        + clusterProperties.getMaxAttempts() + " times: " + lastError);
+            }
+            try {
+                Thread.sleep(clusterProperties.getPollMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the chunks of import job " + job.getId(), e);
+            }
+        }
+    }
+}
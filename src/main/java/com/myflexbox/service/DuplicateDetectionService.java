@@ -0,0 +1,193 @@
+package com.myflexbox.service;
+
+import com.myflexbox.beans.ImportProperties;
+import com.myflexbox.dedup.DuplicateDetector;
+import com.myflexbox.dedup.DuplicateMatch;
+import com.myflexbox.dedup.PersonRecord;
+import com.myflexbox.entity.Address;
+import com.myflexbox.entity.ImportJob;
+import com.myflexbox.entity.ImportJobDuplicates;
+import com.myflexbox.entity.User;
+import com.myflexbox.mapper.CompiledRowMapper;
+import com.myflexbox.mapper.CsvMapping;
+import com.myflexbox.mapper.CsvRecordReader;
+import com.myflexbox.repository.ImportJobDuplicatesRepository;
+import com.myflexbox.repository.UserRepository;
+import com.myflexbox.repository.UserSummary;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Looks for near-duplicate people in a staged file, and optionally between the file and the saved users.
+ */
+@Slf4j
+@Service
+public class DuplicateDetectionService {
+
+    /**
+     * Number of postcodes per query when reading saved users, kept well below database parameter limits.
+     */
+    private static final int POSTCODE_BATCH_SIZE = 500;
+
+    private final UserRepository userRepository;
+    private final ImportJobDuplicatesRepository importJobDuplicatesRepository;
+    private final ImportProperties importProperties;
+
+    public DuplicateDetectionService(UserRepository userRepository,
+                                     ImportJobDuplicatesRepository importJobDuplicatesRepository,
+                                     ImportProperties importProperties) {
+        this.userRepository = userRepository;
+        this.importJobDuplicatesRepository = importJobDuplicatesRepository;
+        this.importProperties = importProperties;
+    }
+
+    /**
+     * Maps every row of a staged file with the given mappings and finds the duplicates among them.
+     * Rows are keyed by their data row index (the header not counted).
+     *
+     * @param stagedPath      The staged CSV file.
+     * @param mappings        The column mappings for the CSV data.
+     * @param transforms      The transformation expression per column, or null for none.
+     * @param includeExisting Whether saved users sharing a postcode with a row are checked as well.
+     * @return The suspected duplicates, ordered by row.
+     */
+    public List<DuplicateMatch> detect(Path stagedPath, List<CsvMapping> mappings, List<String> transforms,
+                                       boolean includeExisting) {
+        List<PersonRecord> records = readRecords(stagedPath, CompiledRowMapper.compile(mappings, transforms));
+        if (includeExisting) {
+            records.addAll(readExisting(records));
+        }
+        long start = System.nanoTime();
+        List<DuplicateMatch> duplicates = new DuplicateDetector(importProperties.getDuplicateThreshold())
+                .findDuplicates(records);
+        log.info("Found {} suspected duplicates among {} people in {} ms", duplicates.size(), records.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        return duplicates;
+    }
+
+    /**
+     * Finds the data rows of a job's staged file that duplicate an earlier row of the same file.
+     * Saved users are not considered, so the result only depends on the file and stays the same when a
+     * partly imported job is resumed. Detection reads and compares the whole file, so its result is stored
+     * with the job the first time and read back when the job is resumed or its chunks are imported on other nodes.
+     *
+     * @param job        The import job merging duplicates.
+     * @param mappings   The column mappings for the CSV data.
+     * @param transforms The transformation expression per column, or null for none.
+     * @return The indexes of the rows to skip.
+     */
+    public Set<Long> findDuplicateRows(ImportJob job, List<CsvMapping> mappings, List<String> transforms) {
+        Optional<ImportJobDuplicates> stored = importJobDuplicatesRepository.findById(job.getId());
+        if (stored.isPresent()) {
+            return decodeRows(stored.get().getRowIndexes());
+        }
+        Set<Long> rows = detect(Path.of(job.getStagedPath()), mappings, transforms, false).stream()
+                .map(match -> match.duplicate().key())
+                .collect(Collectors.toSet());
+        try {
+            importJobDuplicatesRepository.save(new ImportJobDuplicates(job.getId(), rows.size(), encodeRows(rows)));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Duplicate rows of import job {} were stored concurrently", job.getId(), e);
+        }
+        return rows;
+    }
+
+    /**
+     * Drops the stored duplicate rows of a job that will not be resumed again.
+     *
+     * @param job The completed import job.
+     */
+    public void forgetDuplicateRows(ImportJob job) {
+        importJobDuplicatesRepository.deleteById(job.getId());
+    }
+
+    private List<PersonRecord> readRecords(Path stagedPath, CompiledRowMapper rowMapper) {
+        List<PersonRecord> records = new ArrayList<>();
+        try (InputStream inputStream = Files.newInputStream(stagedPath);
+             CsvRecordReader reader = new CsvRecordReader(inputStream, 0)) {
+            reader.readRecord(); // Skip the header row
+            long rowIndex = 0;
+            String[] row;
+            while ((row = reader.readRecord()) != null) {
+                User user = rowMapper.map(row);
+                if (user != null) {
+                    Address address = user.getAddress();
+                    records.add(new PersonRecord(rowIndex, false, user.getFirstName(), user.getLastName(),
+                            address != null ? address.getStreet() : null,
+                            address != null ? address.getPostcode() : null));
+                }
+                rowIndex++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read staged file " + stagedPath, e);
+        }
+        return records;
+    }
+
+    private static byte[] encodeRows(Set<Long> rows) {
+        long[] sorted = rows.stream().mapToLong(Long::longValue).sorted().toArray();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(sorted.length * 2);
+        long previous = 0;
+        for (long row : sorted) {
+            long delta = row - previous;
+            previous = row;
+            while ((delta & ~0x7FL) != 0) {
+                encoded.write((int) (delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            encoded.write((int) delta);
+        }
+        return encoded.toByteArray();
+    }
+
+    private static Set<Long> decodeRows(byte[] encoded) {
+        Set<Long> rows = new HashSet<>();
+        long previous = 0;
+        long delta = 0;
+        int shift = 0;
+        for (byte b : encoded) {
+            delta |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) != 0) {
+                shift += 7;
+                continue;
+            }
+            previous += delta;
+            rows.add(previous);
+            delta = 0;
+            shift = 0;
+        }
+        return rows;
+    }
+
+    private List<PersonRecord> readExisting(List<PersonRecord> records) {
+        List<String> postcodes = records.stream()
+                .map(PersonRecord::postcode)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        List<PersonRecord> existing = new ArrayList<>();
+        for (int from = 0; from < postcodes.size(); from += POSTCODE_BATCH_SIZE) {
+            List<String> batch = postcodes.subList(from, Math.min(postcodes.size(), from + POSTCODE_BATCH_SIZE));
+            for (UserSummary user : userRepository.findSummariesByPostcodeIn(batch)) {
+                existing.add(new PersonRecord(user.getId(), true, user.getFirstName(), user.getLastName(),
+                        user.getStreet(), user.getPostcode()));
+            }
+        }
+        return existing;
+    }
+}
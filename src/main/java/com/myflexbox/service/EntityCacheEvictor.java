@@ -0,0 +1,30 @@
+package com.myflexbox.service;
+
+import com.myflexbox.entity.Address;
+import com.myflexbox.entity.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Evicts the cached users, addresses and query results after writes that bypass Hibernate.
+ * Imports saved through the repositories keep the second-level cache coherent on their own.
+ */
+@Component
+public class EntityCacheEvictor {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public EntityCacheEvictor(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Evicts all cached users and addresses together with all cached query results.
+     */
+    public void evictImportedEntities() {
+        entityManagerFactory.getCache().evict(User.class);
+        entityManagerFactory.getCache().evict(Address.class);
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegions();
+    }
+}
@@ -0,0 +1,315 @@
+package com.myflexbox.service;
+
+import com.myflexbox.beans.ClusterProperties;
+import com.myflexbox.beans.ImportProperties;
+import com.myflexbox.entity.Address;
+import com.myflexbox.entity.BulkLoadLock;
+import com.myflexbox.entity.User;
+import com.myflexbox.mapper.CsvColumnMapper;
+import com.myflexbox.mapper.CsvMapping;
+import com.myflexbox.mapper.CsvRecordReader;
+import com.myflexbox.repository.BulkLoadLockRepository;
+import com.opencsv.CSVWriterBuilder;
+import com.opencsv.ICSVWriter;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Fast path for imports into H2 when every column is either ignored or copied verbatim into one field.
+ * The staged file is first rewritten into a normalized file holding exactly the target columns and
+ * pre-assigned ids, which H2 then reads itself with {@code INSERT ... SELECT FROM CSVREAD} in a single
+ * transaction. Secondary indexes and the users to address foreign key are dropped during the load and
+ * rebuilt once afterwards instead of being maintained row by row. As the rows bypass Hibernate, the
+ * second-level and query caches are evicted after the load.
+ * <p>
+ * Dropping indexes and disabling the foreign key check are persistent schema changes outside the load
+ * transaction, so bulk loads are serialized by the {@link BulkLoadLock} across all nodes, and the indexes are
+ * always rebuilt from the entity mappings. A load interrupted by a crash leaves the lock held by its node,
+ * which restores the indexes and the foreign key check in {@link #recoverInterruptedLoad()} when it starts again.
+ */
+@Slf4j
+@Service
+public class H2BulkLoader {
+
+    /**
+     * Mappings the fast path can load, with the normalized file column they are copied to.
+     */
+    private static final Map<String, String> BULK_COLUMNS = Map.of(
+            "First", "FIRST_NAME",
+            "Last", "LAST_NAME",
+            "Address", "STREET",
+            "ZIP", "POSTCODE",
+            "Country", "COUNTRY"
+    );
+    private static final String[] NORMALIZED_HEADER =
+            {"ID", "FIRST_NAME", "LAST_NAME", "ADDRESS_ID", "STREET", "POSTCODE", "COUNTRY"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SequenceIdAllocator sequenceIdAllocator;
+    private final EntityCacheEvictor entityCacheEvictor;
+    private final ImportProperties importProperties;
+    private final BulkLoadLockRepository bulkLoadLockRepository;
+    private final ClusterProperties clusterProperties;
+    private volatile Boolean h2Database;
+
+    public H2BulkLoader(JdbcTemplate jdbcTemplate,
+                        TransactionTemplate transactionTemplate,
+                        SequenceIdAllocator sequenceIdAllocator,
+                        EntityCacheEvictor entityCacheEvictor,
+                        ImportProperties importProperties,
+                        BulkLoadLockRepository bulkLoadLockRepository,
+                        ClusterProperties clusterProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.sequenceIdAllocator = sequenceIdAllocator;
+        this.entityCacheEvictor = entityCacheEvictor;
+        this.importProperties = importProperties;
+        this.bulkLoadLockRepository = bulkLoadLockRepository;
+        this.clusterProperties = clusterProperties;
+    }
+
+    /**
+     * Checks whether the fast path can load a file with the given mappings.
+     *
+     * @param mappings The column mappings for the CSV data.
+     * @return true if bulk loading is enabled, the database is H2 and all mappings are plain copies.
+     */
+    public boolean supports(List<CsvMapping> mappings) {
+        if (!importProperties.isBulkLoadEnabled() || !isH2Database()) {
+            return false;
+        }
+        boolean anyMapped = false;
+        for (CsvMapping mapping : mappings) {
+            if (mapping == null || CsvColumnMapper.IGNORE.equals(mapping.getCsvColumnName())) {
+                continue;
+            }
+            if (!BULK_COLUMNS.containsKey(mapping.getCsvColumnName())) {
+                return false;
+            }
+            anyMapped = true;
+        }
+        return anyMapped;
+    }
+
+    /**
+     * Loads the staged file in one transaction, unless another bulk load holds the lock.
+     *
+     * @param stagedFile The staged CSV file.
+     * @param mappings   The column mappings for the CSV data, accepted by {@link #supports(List)}.
+     * @param onLoaded   Called inside the load transaction with the number of users inserted.
+     * @return The number of users inserted, or empty if another bulk load is running and nothing was loaded.
+     */
+    public OptionalLong load(StagedFile stagedFile, List<CsvMapping> mappings, LongConsumer onLoaded) {
+        String nodeId = clusterProperties.getNodeId();
+        if (!acquireLock(nodeId)) {
+            return OptionalLong.empty();
+        }
+        Path normalizedFile = stagedFile.path().resolveSibling(stagedFile.hash() + ".bulk.csv");
+        boolean schemaRestored = true;
+        try {
+            long rows = normalize(stagedFile.path(), normalizedFile, mappings);
+            schemaRestored = false;
+            dropSecondaryIndexes();
+            jdbcTemplate.execute("ALTER TABLE users SET REFERENTIAL_INTEGRITY FALSE");
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    String source = csvRead(normalizedFile);
+                    jdbcTemplate.update("INSERT INTO address (id, street, postcode, country) "
+                            + "SELECT CAST(ADDRESS_ID AS BIGINT), STREET, POSTCODE, COUNTRY FROM " + source);
+                    jdbcTemplate.update("INSERT INTO users (id, first_name, last_name, address_id) "
+                            + "SELECT CAST(ID AS BIGINT), FIRST_NAME, LAST_NAME, CAST(ADDRESS_ID AS BIGINT) FROM " + source);
+                    onLoaded.accept(rows);
+                });
+                entityCacheEvictor.evictImportedEntities();
+            } finally {
+                restoreSchema(true);
+                schemaRestored = true;
+            }
+            log.info("Bulk loaded {} users from {}", rows, stagedFile.fileName());
+            return OptionalLong.of(rows);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to normalize staged file " + stagedFile.path(), e);
+        } finally {
+            if (schemaRestored) {
+                bulkLoadLockRepository.release(BulkLoadLock.ID, nodeId);
+            } else {
+                // The lock stays held, so no other load runs on the changed schema until the next start restores it
+                log.error("Unable to restore the schema after bulk loading {}", stagedFile.fileName());
+            }
+            try {
+                Files.deleteIfExists(normalizedFile);
+            } catch (IOException e) {
+                log.warn("Unable to delete normalized file {}", normalizedFile, e);
+            }
+        }
+    }
+
+    /**
+     * Restores the secondary indexes and the foreign key check after a bulk load of this node was interrupted,
+     * e.g. by a crash, and recreates secondary indexes missing for any other reason. Without cluster mode every
+     * held lock is considered interrupted, as this is the only node; in cluster mode a lock held by another node
+     * is left to that node.
+     */
+    public void recoverInterruptedLoad() {
+        if (!isH2Database()) {
+            return;
+        }
+        String nodeId = clusterProperties.getNodeId();
+        boolean interrupted = false;
+        if (!acquireLock(nodeId)) {
+            String owner = bulkLoadLockRepository.findById(BulkLoadLock.ID).map(BulkLoadLock::getOwner).orElse(null);
+            interrupted = owner != null && (!clusterProperties.isEnabled() || nodeId.equals(owner));
+            if (!interrupted || bulkLoadLockRepository.takeOver(BulkLoadLock.ID, owner, nodeId, LocalDateTime.now()) == 0) {
+                log.info("Bulk load lock is held by node {}, not restoring the schema", owner);
+                return;
+            }
+            log.warn("Restoring indexes and referential integrity after the bulk load interrupted on node {}", owner);
+        }
+        try {
+            restoreSchema(interrupted);
+        } finally {
+            bulkLoadLockRepository.release(BulkLoadLock.ID, nodeId);
+        }
+    }
+
+    /**
+     * Takes the bulk load lock, creating its row on first use.
+     */
+    private boolean acquireLock(String nodeId) {
+        if (bulkLoadLockRepository.acquire(BulkLoadLock.ID, nodeId, LocalDateTime.now()) == 1) {
+            return true;
+        }
+        if (bulkLoadLockRepository.existsById(BulkLoadLock.ID)) {
+            return false;
+        }
+        try {
+            bulkLoadLockRepository.save(new BulkLoadLock(BulkLoadLock.ID));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Bulk load lock was created concurrently", e);
+        }
+        return bulkLoadLockRepository.acquire(BulkLoadLock.ID, nodeId, LocalDateTime.now()) == 1;
+    }
+
+    /**
+     * Rewrites the staged file into the fixed normalized layout, dropping ignored columns and empty rows
+     * and assigning user and address ids from their sequences.
+     *
+     * @return The number of rows written.
+     */
+    private long normalize(Path stagedPath, Path normalizedFile, List<CsvMapping> mappings) throws IOException {
+        int[] targetIndexes = new int[mappings.size()];
+        for (int i = 0; i < mappings.size(); i++) {
+            CsvMapping mapping = mappings.get(i);
+            String column = mapping == null ? null : BULK_COLUMNS.get(mapping.getCsvColumnName());
+            targetIndexes[i] = column == null ? -1 : List.of(NORMALIZED_HEADER).indexOf(column);
+        }
+
+        LongSupplier userIds = sequenceIdAllocator.idSupplier("users_seq");
+        LongSupplier addressIds = sequenceIdAllocator.idSupplier("address_seq");
+        long rows = 0;
+        try (InputStream inputStream = Files.newInputStream(stagedPath);
+             CsvRecordReader reader = new CsvRecordReader(inputStream, 0);
+             BufferedWriter writer = Files.newBufferedWriter(normalizedFile, StandardCharsets.UTF_8);
+             ICSVWriter csvWriter = new CSVWriterBuilder(writer).withSeparator(CsvColumnMapper.CSV_SEPARATOR).build()) {
+
+            reader.readRecord(); // Skip the header row
+            csvWriter.writeNext(NORMALIZED_HEADER);
+            String[] row;
+            while ((row = reader.readRecord()) != null) {
+                String[] normalized = new String[NORMALIZED_HEADER.length];
+                boolean populated = false;
+                for (int i = 0; i < Math.min(row.length, targetIndexes.length); i++) {
+                    if (targetIndexes[i] >= 0) {
+                        normalized[targetIndexes[i]] = row[i];
+                        populated |= row[i] != null;
+                    }
+                }
+                if (populated) {
+                    normalized[0] = String.valueOf(userIds.getAsLong());
+                    normalized[3] = String.valueOf(addressIds.getAsLong());
+                    csvWriter.writeNext(normalized);
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    private String csvRead(Path normalizedFile) {
+        String fileName = normalizedFile.toAbsolutePath().toString().replace("'", "''");
+        return "CSVREAD('" + fileName + "', NULL, 'charset=UTF-8 fieldSeparator=" + CsvColumnMapper.CSV_SEPARATOR + "')";
+    }
+
+    /**
+     * Drops the secondary indexes declared by the user and address entities.
+     */
+    private void dropSecondaryIndexes() {
+        for (String indexName : secondaryIndexes().keySet()) {
+            jdbcTemplate.execute("DROP INDEX IF EXISTS " + indexName);
+        }
+    }
+
+    /**
+     * Recreates the secondary indexes and enables the users to address foreign key again.
+     * Both statements are no-ops on a schema that was never changed.
+     *
+     * @param checkRows Whether all rows are checked against the foreign key, in one pass instead of one lookup
+     *                  per inserted row.
+     */
+    private void restoreSchema(boolean checkRows) {
+        secondaryIndexes().forEach((indexName, definition) ->
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + indexName + " ON " + definition));
+        jdbcTemplate.execute("ALTER TABLE users SET REFERENTIAL_INTEGRITY TRUE" + (checkRows ? " CHECK" : ""));
+    }
+
+    /**
+     * Reads the secondary indexes declared in the {@link Table} mappings of the user and address entities.
+     * Property names are converted to column names the way Spring's default physical naming strategy does.
+     *
+     * @return The indexes as index name to "table (columns)" definitions.
+     */
+    private static Map<String, String> secondaryIndexes() {
+        Map<String, String> definitions = new LinkedHashMap<>();
+        for (Class<?> entity : List.of(User.class, Address.class)) {
+            Table table = entity.getAnnotation(Table.class);
+            for (Index index : table.indexes()) {
+                List<String> columns = Stream.of(index.columnList().split(","))
+                        .map(property -> property.trim().replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase())
+                        .toList();
+                definitions.put(index.name(), table.name() + " (" + String.join(", ", columns) + ")");
+            }
+        }
+        return definitions;
+    }
+
+    private boolean isH2Database() {
+        if (h2Database == null) {
+            h2Database = "H2".equals(jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()));
+        }
+        return h2Database;
+    }
+}
@@ -0,0 +1,201 @@
+package com.myflexbox.service;
+
+import com.myflexbox.beans.ClusterProperties;
+import com.myflexbox.entity.ImportChunk;
+import com.myflexbox.entity.ImportJob;
+import com.myflexbox.entity.User;
+import com.myflexbox.mapper.CompiledRowMapper;
+import com.myflexbox.mapper.CsvColumnMapper;
+import com.myflexbox.mapper.CsvMapping;
+import com.myflexbox.mapper.CsvRecordReader;
+import com.myflexbox.repository.ImportChunkRepository;
+import com.myflexbox.repository.ImportJobRepository;
+import com.myflexbox.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Imports chunks of cluster imports on this node.
+ * The worker polls for pending chunks and chunks whose lease expired, claims as many as it has free threads,
+ * renews the leases of the chunks it is importing with a heartbeat and saves each chunk's users in one
+ * transaction together with marking the chunk done. If the lease was lost in the meantime, that transaction
+ * is rolled back, so every chunk is imported exactly once. Not lazily initialized, as it has to be running
+ * for the schedules to be registered.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+public class ImportChunkWorker {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final ImportChunkRepository importChunkRepository;
+    private final ImportJobRepository importJobRepository;
+    private final UserRepository userRepository;
+    private final DuplicateDetectionService duplicateDetectionService;
+    private final TransactionTemplate transactionTemplate;
+    private final ClusterProperties clusterProperties;
+    private final CsvColumnMapper csvColumnMapper = new CsvColumnMapper();
+    private final Set<Long> activeChunks = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Set<Long>> duplicateRowsByJob = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    public ImportChunkWorker(ImportChunkRepository importChunkRepository,
+                             ImportJobRepository importJobRepository,
+                             UserRepository userRepository,
+                             DuplicateDetectionService duplicateDetectionService,
+                             TransactionTemplate transactionTemplate,
+                             ClusterProperties clusterProperties) {
+        this.importChunkRepository = importChunkRepository;
+        this.importJobRepository = importJobRepository;
+        this.userRepository = userRepository;
+        this.duplicateDetectionService = duplicateDetectionService;
+        this.transactionTemplate = transactionTemplate;
+        this.clusterProperties = clusterProperties;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(clusterProperties.getWorkerThreads(), 1), runnable -> {
+            Thread thread = new Thread(runnable, "import-chunk-worker-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Claims chunks for the free worker threads.
+     */
+    @Scheduled(fixedDelayString = "${csvimporter.cluster.poll-millis:1000}")
+    public void poll() {
+        if (!clusterProperties.isEnabled()) {
+            return;
+        }
+        int freeThreads = clusterProperties.getWorkerThreads() - activeChunks.size();
+        if (freeThreads <= 0) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> claimable = importChunkRepository.findClaimableIds(now, clusterProperties.getMaxAttempts(),
+                PageRequest.of(0, freeThreads));
+        if (claimable.isEmpty() && activeChunks.isEmpty()) {
+            duplicateRowsByJob.clear(); // Nothing left to import, drop the duplicates of finished jobs
+        }
+        for (Long chunkId : claimable) {
+            LocalDateTime leaseExpiresAt = now.plusSeconds(clusterProperties.getLeaseSeconds());
+            if (importChunkRepository.claim(chunkId, clusterProperties.getNodeId(), leaseExpiresAt, now,
+                    clusterProperties.getMaxAttempts()) == 1) {
+                activeChunks.add(chunkId);
+                executor.submit(() -> process(chunkId));
+            }
+        }
+    }
+
+    /**
+     * Renews the leases of the chunks this node is importing.
+     */
+    @Scheduled(fixedDelayString = "${csvimporter.cluster.heartbeat-seconds:15}", timeUnit = TimeUnit.SECONDS)
+    public void heartbeat() {
+        if (activeChunks.isEmpty()) {
+            return;
+        }
+        List<Long> chunkIds = List.copyOf(activeChunks);
+        int renewed = importChunkRepository.renewLeases(chunkIds, clusterProperties.getNodeId(),
+                LocalDateTime.now().plusSeconds(clusterProperties.getLeaseSeconds()));
+        if (renewed < chunkIds.size()) {
+            log.warn("Node {} lost the lease of {} chunks, their imports will be rolled back",
+                    clusterProperties.getNodeId(), chunkIds.size() - renewed);
+        }
+    }
+
+    private void process(Long chunkId) {
+        String nodeId = clusterProperties.getNodeId();
+        try {
+            ImportChunk chunk = importChunkRepository.findById(chunkId)
+                    .orElseThrow(() -> new IllegalStateException("Import chunk " + chunkId + " no longer exists"));
+            ImportJob job = importJobRepository.findById(chunk.getJobId())
+                    .orElseThrow(() -> new IllegalStateException("Import job " + chunk.getJobId() + " no longer exists"));
+            List<User> users = readChunk(job, chunk);
+            transactionTemplate.executeWithoutResult(status -> {
+                userRepository.saveAll(users);
+                if (importChunkRepository.markDone(chunkId, nodeId, users.size(), LocalDateTime.now()) != 1) {
+                    throw new IllegalStateException("Node " + nodeId + " lost the lease of import chunk " + chunkId);
+                }
+            });
+            log.info("Node {} imported chunk {} of import job {}: {} users", nodeId, chunk.getChunkIndex(),
+                    job.getId(), users.size());
+        } catch (RuntimeException e) {
+            log.warn("Node {} failed to import chunk {}", nodeId, chunkId, e);
+            release(chunkId, e);
+        } finally {
+            activeChunks.remove(chunkId);
+        }
+    }
+
+    /**
+     * Reads and maps the rows of one chunk, skipping duplicate rows when the job merges duplicates.
+     */
+    private List<User> readChunk(ImportJob job, ImportChunk chunk) {
+        List<CsvMapping> mappings = csvColumnMapper.decodeMappings(job.getColumnMappings());
+        List<String> transforms = csvColumnMapper.decodeTransforms(job.getColumnTransforms());
+        CompiledRowMapper rowMapper = CompiledRowMapper.compile(mappings, transforms);
+        Path stagedPath = Path.of(job.getStagedPath());
+        Set<Long> duplicateRows = job.isMergeDuplicates()
+                ? duplicateRowsByJob.computeIfAbsent(job.getId(),
+                        jobId -> duplicateDetectionService.findDuplicateRows(job, mappings, transforms))
+                : Set.of();
+
+        List<User> users = new ArrayList<>(chunk.getRowCount());
+        try (FileChannel channel = FileChannel.open(stagedPath, StandardOpenOption.READ);
+             CsvRecordReader reader = new CsvRecordReader(
+                     Channels.newInputStream(channel.position(chunk.getStartOffset())), chunk.getStartOffset())) {
+            for (int i = 0; i < chunk.getRowCount(); i++) {
+                String[] row = reader.readRecord();
+                if (row == null) {
+                    throw new IllegalStateException("Staged file " + stagedPath + " ended inside import chunk " + chunk.getId());
+                }
+                User user = duplicateRows.contains(chunk.getFirstRowIndex() + i) ? null : rowMapper.map(row);
+                if (user != null) {
+                    users.add(user);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read staged file " + stagedPath, e);
+        }
+        return users;
+    }
+
+    private void release(Long chunkId, RuntimeException cause) {
+        String error = String.valueOf(cause.getMessage());
+        try {
+            importChunkRepository.release(chunkId, clusterProperties.getNodeId(),
+                    error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error, LocalDateTime.now());
+        } catch (RuntimeException e) {
+            log.warn("Unable to release import chunk {}, it is taken over once its lease expires", chunkId, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,15 @@
+package com.myflexbox.service;
+
+/**
+ * Thrown when an import cannot start because the same job is already running, on this node or on another one.
+ * Unlike other failures of an import, retrying the request later may succeed.
+ */
+public class ImportJobConflictException extends IllegalStateException {
+
+    /**
+     * @param message The reason the job cannot be started.
+     */
+    public ImportJobConflictException(String message) {
+        super(message);
+    }
+}
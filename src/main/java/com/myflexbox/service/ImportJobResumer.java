@@ -0,0 +1,111 @@
+package com.myflexbox.service;
+
+import com.myflexbox.beans.ClusterProperties;
+import com.myflexbox.entity.ImportJob;
+import com.myflexbox.entity.ImportJobStatus;
+import com.myflexbox.repository.ImportJobRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Resumes import jobs that were still running when the application stopped.
+ * Jobs are resumed one after another on a background thread, so startup is not delayed. Partitioned jobs
+ * stopped while committing cannot be resumed; the rows their committed partitions wrote are deleted by the stored
+ * id ranges and the jobs are marked failed, so importing the file again starts over. Jobs without stored ranges
+ * are marked interrupted instead. Before that, the schema changes of an interrupted bulk load are reverted.
+ */
+@Slf4j
+@Component
+public class ImportJobResumer implements ApplicationRunner {
+
+    private final ImportJobRepository importJobRepository;
+    private final ImportService importService;
+    private final H2BulkLoader h2BulkLoader;
+    private final PartitionedImportWriter partitionedImportWriter;
+    private final ClusterProperties clusterProperties;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "import-resumer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ImportJobResumer(ImportJobRepository importJobRepository, ImportService importService,
+                            H2BulkLoader h2BulkLoader, PartitionedImportWriter partitionedImportWriter,
+                            ClusterProperties clusterProperties) {
+        this.importJobRepository = importJobRepository;
+        this.importService = importService;
+        this.h2BulkLoader = h2BulkLoader;
+        this.partitionedImportWriter = partitionedImportWriter;
+        this.clusterProperties = clusterProperties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        h2BulkLoader.recoverInterruptedLoad();
+        for (ImportJob job : importJobRepository.findByStatus(ImportJobStatus.COMMITTING)) {
+            if (!isCoordinatedHere(job)) {
+                continue;
+            }
+            revertCommitting(job);
+        }
+        for (ImportJob job : importJobRepository.findByStatus(ImportJobStatus.RUNNING)) {
+            if (!isCoordinatedHere(job)) {
+                continue;
+            }
+            log.info("Resuming import job {} of {} after chunk {}", job.getId(), job.getFileName(), job.getChunksCommitted());
+            executor.submit(() -> resume(job));
+        }
+    }
+
+    private void revertCommitting(ImportJob job) {
+        log.error("Import job {} of {} was interrupted while committing its partitions", job.getId(), job.getFileName());
+        boolean reverted;
+        try {
+            reverted = partitionedImportWriter.revert(job);
+        } catch (RuntimeException e) {
+            log.error("Unable to delete the rows of import job {}", job.getId(), e);
+            reverted = false;
+        }
+        if (reverted) {
+            job.setStatus(ImportJobStatus.FAILED);
+            job.setErrorMessage("Interrupted while committing partitions, the committed rows were deleted");
+            job.setChunksCommitted(0);
+            job.setRowsCommitted(0);
+            job.setByteOffset(0);
+            job.setUsersImported(0);
+        } else {
+            job.setStatus(ImportJobStatus.INTERRUPTED);
+            job.setErrorMessage("Interrupted while committing partitions, the rows may be partly imported");
+        }
+        job.setUpdatedAt(LocalDateTime.now());
+        importJobRepository.save(job);
+    }
+
+    /**
+     * In cluster mode every node only resumes the jobs it coordinates; the chunks of a job are imported by
+     * all nodes regardless.
+     */
+    private boolean isCoordinatedHere(ImportJob job) {
+        return !clusterProperties.isEnabled() || clusterProperties.getNodeId().equals(job.getCoordinatorNode());
+    }
+
+    private void resume(ImportJob job) {
+        try {
+            importService.resume(job);
+        } catch (RuntimeException e) {
+            log.error("Resuming import job {} failed", job.getId(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,434 @@
+package com.myflexbox.service;
+
+import com.myflexbox.beans.ClusterProperties;
+import com.myflexbox.beans.ImportProperties;
+import com.myflexbox.entity.ImportJob;
+import com.myflexbox.entity.ImportJobStatus;
+import com.myflexbox.entity.User;
+import com.myflexbox.mapper.CompiledRowMapper;
+import com.myflexbox.mapper.CsvColumnMapper;
+import com.myflexbox.mapper.CsvMapping;
+import com.myflexbox.mapper.CsvRecordReader;
+import com.myflexbox.repository.ImportJobRepository;
+import com.myflexbox.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Imports staged CSV files in chunks.
+ * Every chunk is saved in its own transaction together with the job's checkpoint (row number, byte offset
+ * and chunk id), so a job interrupted at any point lost at most the chunk in flight and resumes right after
+ * the last committed one without importing any row twice.
+ */
+@Slf4j
+@Service
+public class ImportService {
+
+    /**
+     * Jobs an import of the same file and mapping continues instead of starting a new one.
+     */
+    private static final List<ImportJobStatus> RESUMABLE_STATUSES = List.of(ImportJobStatus.RUNNING, ImportJobStatus.FAILED);
+
+    private final UserRepository userRepository;
+    private final ImportJobRepository importJobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ImportProperties importProperties;
+    private final H2BulkLoader h2BulkLoader;
+    private final DuplicateDetectionService duplicateDetectionService;
+    private final PartitionedImportWriter partitionedImportWriter;
+    private final AdaptiveChunkController adaptiveChunkController;
+    private final DistributedImportCoordinator distributedImportCoordinator;
+    private final ClusterProperties clusterProperties;
+    private final EntityManager entityManager;
+    private final CsvColumnMapper csvColumnMapper = new CsvColumnMapper();
+    private final Set<Long> activeJobs = ConcurrentHashMap.newKeySet();
+    private final ExecutorService backgroundExecutor;
+
+    public ImportService(UserRepository userRepository,
+                         ImportJobRepository importJobRepository,
+                         TransactionTemplate transactionTemplate,
+                         ImportProperties importProperties,
+                         H2BulkLoader h2BulkLoader,
+                         DuplicateDetectionService duplicateDetectionService,
+                         PartitionedImportWriter partitionedImportWriter,
+                         AdaptiveChunkController adaptiveChunkController,
+                         DistributedImportCoordinator distributedImportCoordinator,
+                         ClusterProperties clusterProperties,
+                         EntityManager entityManager) {
+        this.userRepository = userRepository;
+        this.importJobRepository = importJobRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.importProperties = importProperties;
+        this.h2BulkLoader = h2BulkLoader;
+        this.duplicateDetectionService = duplicateDetectionService;
+        this.partitionedImportWriter = partitionedImportWriter;
+        this.adaptiveChunkController = adaptiveChunkController;
+        this.distributedImportCoordinator = distributedImportCoordinator;
+        this.clusterProperties = clusterProperties;
+        this.entityManager = entityManager;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.backgroundExecutor = Executors.newFixedThreadPool(Math.max(importProperties.getBackgroundImports(), 1), runnable -> {
+            Thread thread = new Thread(runnable, "import-background-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Imports a staged file with the given mappings and transformations.
+     * If an unfinished job exists for the same file content, mappings and transformations, that job is resumed
+     * instead. Fresh jobs with plain column-copy mappings, no transformations and no duplicate merging go
+     * through the H2 bulk-load fast path when it is enabled. Other fresh jobs are split into chunks for the
+     * workers of all nodes in cluster mode, or written by parallel partitions when more than one writer is
+     * configured.
+     * <p>
+     * In cluster mode a running job another node coordinates is only joined if it was split into chunks, which
+     * every node imports under leases and may wait for. Other running jobs write their rows from the coordinating
+     * node itself, so they are left to that node and resumed by it after a restart.
+     *
+     * @param stagedFile      The staged CSV file.
+     * @param mappings        The column mappings for the CSV data.
+     * @param transforms      The transformation expression per column, or null for none.
+     * @param mergeDuplicates Whether rows duplicating an earlier row of the file are skipped.
+     * @return The finished import job.
+     * @throws ImportJobConflictException if the job is already running on this node, or on another node without chunks.
+     */
+    public ImportJob importFile(StagedFile stagedFile, List<CsvMapping> mappings, List<String> transforms,
+                                boolean mergeDuplicates) {
+        return importFile(stagedFile, mappings, transforms, mergeDuplicates, rows -> { });
+    }
+
+    /**
+     * Imports a staged file like {@link #importFile(StagedFile, List, List, boolean)} on a background thread,
+     * for callers that must not block, such as a UI request holding its session lock.
+     *
+     * @param stagedFile      The staged CSV file.
+     * @param mappings        The column mappings for the CSV data.
+     * @param transforms      The transformation expression per column, or null for none.
+     * @param mergeDuplicates Whether rows duplicating an earlier row of the file are skipped.
+     * @param onProgress      Called on the background thread with the number of rows imported so far.
+     *                        Chunked imports report after every chunk, all-or-nothing imports not until the end.
+     * @return The future of the finished import job.
+     */
+    public CompletableFuture<ImportJob> submitImport(StagedFile stagedFile, List<CsvMapping> mappings,
+                                                     List<String> transforms, boolean mergeDuplicates,
+                                                     LongConsumer onProgress) {
+        return CompletableFuture.supplyAsync(
+                () -> importFile(stagedFile, mappings, transforms, mergeDuplicates, onProgress), backgroundExecutor);
+    }
+
+    private ImportJob importFile(StagedFile stagedFile, List<CsvMapping> mappings, List<String> transforms,
+                                 boolean mergeDuplicates, LongConsumer onProgress) {
+        String columnMappings = csvColumnMapper.encodeMappings(mappings);
+        String columnTransforms = csvColumnMapper.encodeTransforms(transforms);
+        CompiledRowMapper.compile(mappings, transforms); // Fails fast on invalid expressions
+        ImportJob job = importJobRepository
+                .findFirstBySourceHashAndColumnMappingsAndColumnTransformsAndMergeDuplicatesAndStatusInOrderByIdDesc(
+                        stagedFile.hash(), columnMappings, columnTransforms, mergeDuplicates, RESUMABLE_STATUSES)
+                .orElseGet(() -> createJob(stagedFile, columnMappings, columnTransforms, mergeDuplicates));
+        if (distributedImportCoordinator.hasChunks(job)) {
+            return resume(job, onProgress);
+        }
+        if (job.getStatus() == ImportJobStatus.RUNNING && !isCoordinatedHere(job)) {
+            throw new ImportJobConflictException("Import job " + job.getId() + " of this file is running on node "
+                    + job.getCoordinatorNode());
+        }
+        if (job.getChunksCommitted() == 0 && columnTransforms.isEmpty() && !mergeDuplicates
+                && h2BulkLoader.supports(mappings)) {
+            return execute(job, bulkJob -> bulkLoad(bulkJob, stagedFile, mappings, onProgress));
+        }
+        if (job.getChunksCommitted() == 0 && distributedImportCoordinator.isEnabled()) {
+            return execute(job, clusterJob -> distributedImportCoordinator.coordinate(clusterJob, onProgress));
+        }
+        if (job.getChunksCommitted() == 0 && partitionedImportWriter.isEnabled()) {
+            return execute(job, this::importPartitioned);
+        }
+        return resume(job, onProgress);
+    }
+
+    /**
+     * Continues a job from its last committed chunk until the whole file has been imported.
+     * Jobs split into chunks for the cluster are waited for until all their chunks are imported.
+     *
+     * @param job The job to run.
+     * @return The job after it completed.
+     */
+    public ImportJob resume(ImportJob job) {
+        return resume(job, rows -> { });
+    }
+
+    private ImportJob resume(ImportJob job, LongConsumer onProgress) {
+        if (distributedImportCoordinator.hasChunks(job)) {
+            return execute(job, clusterJob -> distributedImportCoordinator.coordinate(clusterJob, onProgress));
+        }
+        return execute(job, chunkedJob -> importChunks(chunkedJob, onProgress));
+    }
+
+    /**
+     * A job is coordinated here unless the cluster mode is enabled and another node created or took it.
+     */
+    private boolean isCoordinatedHere(ImportJob job) {
+        return !clusterProperties.isEnabled() || clusterProperties.getNodeId().equals(job.getCoordinatorNode());
+    }
+
+    /**
+     * Runs an import for a job, guarding against running the same job twice and tracking its status.
+     */
+    private ImportJob execute(ImportJob job, Consumer<ImportJob> importer) {
+        if (!activeJobs.add(job.getId())) {
+            throw new ImportJobConflictException("Import job " + job.getId() + " is already running");
+        }
+        try {
+            job.setStatus(ImportJobStatus.RUNNING);
+            job.setErrorMessage(null);
+            job.setUpdatedAt(LocalDateTime.now());
+            importJobRepository.save(job);
+
+            importer.accept(job);
+
+            job.setStatus(ImportJobStatus.COMPLETED);
+            job.setUpdatedAt(LocalDateTime.now());
+            importJobRepository.save(job);
+            if (job.isMergeDuplicates()) {
+                duplicateDetectionService.forgetDuplicateRows(job);
+            }
+            log.info("Import job {} completed: {} users from {} rows", job.getId(), job.getUsersImported(), job.getRowsCommitted());
+            return job;
+        } catch (RuntimeException e) {
+            markFailed(job.getId(), e);
+            throw e;
+        } finally {
+            activeJobs.remove(job.getId());
+        }
+    }
+
+    private ImportJob createJob(StagedFile stagedFile, String columnMappings, String columnTransforms,
+                                boolean mergeDuplicates) {
+        ImportJob job = new ImportJob();
+        job.setFileName(stagedFile.fileName());
+        job.setSourceHash(stagedFile.hash());
+        job.setStagedPath(stagedFile.path().toAbsolutePath().toString());
+        job.setColumnMappings(columnMappings);
+        job.setColumnTransforms(columnTransforms);
+        job.setMergeDuplicates(mergeDuplicates);
+        job.setCoordinatorNode(clusterProperties.getNodeId());
+        job.setChunkSize(importProperties.getChunkSize());
+        job.setStatus(ImportJobStatus.RUNNING);
+        job.setCreatedAt(LocalDateTime.now());
+        job.setUpdatedAt(job.getCreatedAt());
+        return importJobRepository.save(job);
+    }
+
+    /**
+     * Reads the staged file from the job's checkpoint and commits it chunk by chunk.
+     * When the job merges duplicates, the duplicate rows are detected over the whole file up front and
+     * skipped by their row index, which stays valid when the job is resumed; they are stored with the job,
+     * so a resumed job does not detect them again. Chunk and JDBC batch sizes are
+     * tuned from chunk to chunk by the {@link AdaptiveChunkController}; as the checkpoint is a byte offset,
+     * chunks of different sizes resume the same way.
+     */
+    private void importChunks(ImportJob job, LongConsumer onProgress) {
+        List<CsvMapping> mappings = csvColumnMapper.decodeMappings(job.getColumnMappings());
+        List<String> transforms = csvColumnMapper.decodeTransforms(job.getColumnTransforms());
+        CompiledRowMapper rowMapper = CompiledRowMapper.compile(mappings, transforms);
+        Path stagedPath = Path.of(job.getStagedPath());
+        Set<Long> duplicateRows = job.isMergeDuplicates()
+                ? duplicateDetectionService.findDuplicateRows(job, mappings, transforms)
+                : Set.of();
+        try (FileChannel channel = FileChannel.open(stagedPath, StandardOpenOption.READ);
+             CsvRecordReader reader = new CsvRecordReader(
+                     Channels.newInputStream(channel.position(job.getByteOffset())), job.getByteOffset())) {
+
+            if (job.getByteOffset() == 0) {
+                reader.readRecord(); // Skip the header row
+            }
+
+            AdaptiveChunkController.Sizing sizing = adaptiveChunkController.start(job.getChunkSize());
+            long started = System.nanoTime();
+            List<String[]> rows = readChunk(reader, sizing.getChunkSize());
+            while (!rows.isEmpty()) {
+                long parsed = System.nanoTime();
+                List<User> users = rowMapper.mapAll(withoutDuplicates(rows, job.getRowsCommitted(), duplicateRows));
+                long mapped = System.nanoTime();
+                commitChunk(job, users, rows.size(), reader.getOffset(), sizing);
+                long committed = System.nanoTime();
+                sizing.record(rows.size(), parsed - started, mapped - parsed, committed - mapped);
+                onProgress.accept(job.getRowsCommitted());
+
+                started = System.nanoTime();
+                rows = readChunk(reader, sizing.getChunkSize());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read staged file " + stagedPath, e);
+        }
+    }
+
+    /**
+     * Reads and maps the whole staged file while parallel partitions write it, then commits all partitions
+     * together. Until the commit barrier nothing is visible and a failed or interrupted job restarts from the
+     * beginning. The job is marked committing together with the id ranges of every partition, so if it fails or
+     * the application stops while the partitions are committed, the rows already committed are deleted again.
+     * Like a bulk load, the job is completed together with dropping these ranges.
+     */
+    private void importPartitioned(ImportJob job) {
+        List<CsvMapping> mappings = csvColumnMapper.decodeMappings(job.getColumnMappings());
+        List<String> transforms = csvColumnMapper.decodeTransforms(job.getColumnTransforms());
+        CompiledRowMapper rowMapper = CompiledRowMapper.compile(mappings, transforms);
+        Path stagedPath = Path.of(job.getStagedPath());
+        Set<Long> duplicateRows = job.isMergeDuplicates()
+                ? duplicateDetectionService.findDuplicateRows(job, mappings, transforms)
+                : Set.of();
+        try (InputStream inputStream = Files.newInputStream(stagedPath);
+             CsvRecordReader reader = new CsvRecordReader(inputStream, 0);
+             PartitionedWrite write = partitionedImportWriter.open()) {
+
+            reader.readRecord(); // Skip the header row
+            long rowIndex = 0;
+            String[] row;
+            while ((row = reader.readRecord()) != null) {
+                User user = duplicateRows.contains(rowIndex) ? null : rowMapper.map(row);
+                if (user != null) {
+                    write.write(user);
+                }
+                rowIndex++;
+            }
+
+            long rows = rowIndex;
+            long fileSize = reader.getOffset();
+            write.commit((writtenIds, users) -> transactionTemplate.executeWithoutResult(status -> {
+                job.setStatus(ImportJobStatus.COMMITTING);
+                job.setChunksCommitted(1);
+                job.setRowsCommitted(rows);
+                job.setByteOffset(fileSize);
+                job.setUsersImported(users);
+                job.setUpdatedAt(LocalDateTime.now());
+                importJobRepository.save(job);
+                partitionedImportWriter.saveWrittenIds(job, writtenIds);
+            }));
+            transactionTemplate.executeWithoutResult(status -> {
+                job.setStatus(ImportJobStatus.COMPLETED);
+                job.setUpdatedAt(LocalDateTime.now());
+                importJobRepository.save(job);
+                partitionedImportWriter.forgetWrittenIds(job);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read staged file " + stagedPath, e);
+        }
+    }
+
+    private static List<String[]> withoutDuplicates(List<String[]> rows, long firstRowIndex, Set<Long> duplicateRows) {
+        if (duplicateRows.isEmpty()) {
+            return rows;
+        }
+        List<String[]> kept = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            if (!duplicateRows.contains(firstRowIndex + i)) {
+                kept.add(rows.get(i));
+            }
+        }
+        return kept;
+    }
+
+    private List<String[]> readChunk(CsvRecordReader reader, int chunkSize) throws IOException {
+        List<String[]> rows = new ArrayList<>(chunkSize);
+        String[] row;
+        while (rows.size() < chunkSize && (row = reader.readRecord()) != null) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Saves the users of one chunk and advances the job's checkpoint in the same transaction.
+     * The chunk size of the next chunk is stored with the checkpoint, so a resumed job continues with it.
+     */
+    private void commitChunk(ImportJob job, List<User> users, int rowCount, long nextOffset,
+                             AdaptiveChunkController.Sizing sizing) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (adaptiveChunkController.isEnabled()) {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(sizing.getBatchSize());
+            }
+            userRepository.saveAll(users);
+            job.setChunkSize(sizing.getChunkSize());
+            job.setChunksCommitted(job.getChunksCommitted() + 1);
+            job.setRowsCommitted(job.getRowsCommitted() + rowCount);
+            job.setByteOffset(nextOffset);
+            job.setUsersImported(job.getUsersImported() + users.size());
+            job.setUpdatedAt(LocalDateTime.now());
+            importJobRepository.save(job);
+        });
+    }
+
+    /**
+     * Loads the whole file through the bulk loader. The job is completed inside the load transaction,
+     * so a restart either sees the finished job or no loaded rows at all. While another bulk load is running,
+     * the file is imported in chunks instead.
+     */
+    private void bulkLoad(ImportJob job, StagedFile stagedFile, List<CsvMapping> mappings, LongConsumer onProgress) {
+        boolean loaded = h2BulkLoader.load(stagedFile, mappings, users -> {
+            job.setChunksCommitted(1);
+            job.setRowsCommitted(users);
+            job.setByteOffset(stagedFile.size());
+            job.setUsersImported(users);
+            job.setStatus(ImportJobStatus.COMPLETED);
+            job.setUpdatedAt(LocalDateTime.now());
+            importJobRepository.save(job);
+        }).isPresent();
+        if (!loaded) {
+            log.info("Another bulk load is running, importing job {} in chunks", job.getId());
+            importChunks(job, onProgress);
+        }
+    }
+
+    private void markFailed(Long jobId, RuntimeException cause) {
+        log.error("Import job {} failed", jobId, cause);
+        try {
+            // Reload, so a checkpoint of a rolled back chunk is never persisted
+            importJobRepository.findById(jobId).ifPresent(job -> {
+                if (job.getStatus() == ImportJobStatus.COMMITTING) {
+                    // Deletes whatever the partitioned write could not revert itself, a retry starts from the beginning
+                    partitionedImportWriter.revert(job);
+                    job.setChunksCommitted(0);
+                    job.setRowsCommitted(0);
+                    job.setByteOffset(0);
+                    job.setUsersImported(0);
+                }
+                job.setStatus(ImportJobStatus.FAILED);
+                job.setErrorMessage(cause.getMessage());
+                job.setUpdatedAt(LocalDateTime.now());
+                importJobRepository.save(job);
+            });
+        } catch (RuntimeException e) {
+            log.warn("Unable to mark import job {} as failed", jobId, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backgroundExecutor.shutdownNow();
+    }
+}
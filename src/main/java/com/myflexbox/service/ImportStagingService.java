@@ -0,0 +1,78 @@
+package com.myflexbox.service;
+
+import com.myflexbox.beans.ImportProperties;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Copies uploaded CSV files into the staging directory under the hash of their content.
+ * Import jobs read from the staged copy, which outlives the upload buffer and the application itself.
+ */
+@Service
+public class ImportStagingService {
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final ImportProperties importProperties;
+
+    public ImportStagingService(ImportProperties importProperties) {
+        this.importProperties = importProperties;
+    }
+
+    /**
+     * Writes the given stream to the staging directory while hashing it.
+     *
+     * @param inputStream The uploaded file content.
+     * @param fileName    The name of the uploaded file.
+     * @return The staged file.
+     * @throws IOException if the file cannot be written.
+     */
+    public StagedFile stage(InputStream inputStream, String fileName) throws IOException {
+        StagingOutputStream out = openStagingOutput(fileName);
+        try {
+            inputStream.transferTo(out);
+            return out.finish();
+        } catch (IOException e) {
+            out.abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a stream staging content as it is written, for uploads that are processed while they arrive.
+     *
+     * @param fileName The name of the uploaded file.
+     * @return The staging stream; call {@link StagingOutputStream#finish()} once all content is written.
+     * @throws IOException if the staging file cannot be created.
+     */
+    public StagingOutputStream openStagingOutput(String fileName) throws IOException {
+        Path stagingDir = importProperties.getStagingDir();
+        Files.createDirectories(stagingDir);
+        return new StagingOutputStream(stagingDir, fileName);
+    }
+
+    /**
+     * Looks up a file staged earlier by the hash of its content.
+     *
+     * @param hash     The SHA-256 hash of the staged content, as returned when it was staged.
+     * @param fileName The name of the uploaded file.
+     * @return The staged file, or empty if the hash is malformed or nothing is staged under it.
+     * @throws IOException if the size of the staged file cannot be read.
+     */
+    public Optional<StagedFile> findStaged(String hash, String fileName) throws IOException {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            return Optional.empty();
+        }
+        Path path = importProperties.getStagingDir().resolve(hash + ".csv");
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        return Optional.of(new StagedFile(fileName, hash, path, Files.size(path)));
+    }
+}
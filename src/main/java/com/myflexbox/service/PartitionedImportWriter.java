@@ -0,0 +1,184 @@
+package com.myflexbox.service;
+
+import com.myflexbox.beans.ImportProperties;
+import com.myflexbox.entity.ImportJob;
+import com.myflexbox.entity.ImportJobPartition;
+import com.myflexbox.repository.ImportJobPartitionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opens partitioned writes: imports spread over several writer threads, each with its own connection,
+ * id blocks and batch buffer, committed together at the end.
+ * The id ranges of a write are stored with its job while the partitions are committed, so the rows of a
+ * write interrupted halfway through its commits can be deleted again.
+ */
+@Slf4j
+@Service
+public class PartitionedImportWriter {
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SequenceIdAllocator sequenceIdAllocator;
+    private final EntityCacheEvictor entityCacheEvictor;
+    private final ImportJobPartitionRepository importJobPartitionRepository;
+    private final ImportProperties importProperties;
+
+    public PartitionedImportWriter(DataSource dataSource,
+                                   JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   SequenceIdAllocator sequenceIdAllocator,
+                                   EntityCacheEvictor entityCacheEvictor,
+                                   ImportJobPartitionRepository importJobPartitionRepository,
+                                   ImportProperties importProperties) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.sequenceIdAllocator = sequenceIdAllocator;
+        this.entityCacheEvictor = entityCacheEvictor;
+        this.importJobPartitionRepository = importJobPartitionRepository;
+        this.importProperties = importProperties;
+    }
+
+    /**
+     * Checks whether fresh imports are written by several partitions.
+     *
+     * @return true if more than one writer is configured.
+     */
+    public boolean isEnabled() {
+        return importProperties.getWriters() > 1;
+    }
+
+    /**
+     * Opens a write with the configured number of writers, sending rows to the database in batches of
+     * the configured chunk size.
+     *
+     * @return The open write; close it when done, which rolls back everything not committed.
+     * @throws IllegalStateException if the writer connections cannot be opened.
+     */
+    public PartitionedWrite open() {
+        try {
+            return new PartitionedWrite(dataSource, sequenceIdAllocator, entityCacheEvictor,
+                    importProperties.getWriters(), importProperties.getChunkSize());
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to open writer connections", e);
+        }
+    }
+
+    /**
+     * Stores the ids a write inserted for a job. Call it in the transaction that marks the job committing.
+     *
+     * @param job        The job being committed.
+     * @param writtenIds The ids written by each partition.
+     */
+    public void saveWrittenIds(ImportJob job, List<PartitionedWrite.WrittenIds> writtenIds) {
+        List<ImportJobPartition> partitions = new ArrayList<>(writtenIds.size());
+        for (PartitionedWrite.WrittenIds ids : writtenIds) {
+            partitions.add(new ImportJobPartition(job.getId(), ids.partition(),
+                    encodeRanges(ids.userIdRanges()), encodeRanges(ids.addressIdRanges())));
+        }
+        importJobPartitionRepository.saveAll(partitions);
+    }
+
+    /**
+     * Drops the stored ids of a job whose write was committed completely.
+     *
+     * @param job The completed job.
+     */
+    public void forgetWrittenIds(ImportJob job) {
+        importJobPartitionRepository.deleteByJobId(job.getId());
+    }
+
+    /**
+     * Deletes the users and addresses a job's write inserted, by the id ranges stored while it was committing.
+     * Ids of not committed partitions or of rows already deleted match nothing, so reverting twice is harmless.
+     *
+     * @param job The job whose write was interrupted or failed while committing.
+     * @return false if no ids are stored for the job, i.e. its rows cannot be found.
+     */
+    public boolean revert(ImportJob job) {
+        List<ImportJobPartition> partitions = importJobPartitionRepository.findByJobId(job.getId());
+        if (partitions.isEmpty()) {
+            return false;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            // Users first, they reference the addresses
+            for (ImportJobPartition partition : partitions) {
+                delete("DELETE FROM users WHERE id BETWEEN ? AND ?", partition.getUserIdRanges());
+            }
+            for (ImportJobPartition partition : partitions) {
+                delete("DELETE FROM address WHERE id BETWEEN ? AND ?", partition.getAddressIdRanges());
+            }
+            importJobPartitionRepository.deleteByJobId(job.getId());
+        });
+        entityCacheEvictor.evictImportedEntities();
+        log.info("Deleted the rows written by the {} partitions of import job {}", partitions.size(), job.getId());
+        return true;
+    }
+
+    private void delete(String sql, byte[] encodedRanges) {
+        List<Object[]> ranges = new ArrayList<>();
+        for (long[] range : decodeRanges(encodedRanges)) {
+            ranges.add(new Object[]{range[0], range[1]});
+        }
+        jdbcTemplate.batchUpdate(sql, ranges);
+    }
+
+    /**
+     * Encodes ascending ranges as varints of the distance of each range's first id to the previous range's
+     * last id, and of the range's length. Ids come in sequence blocks, so most values fit in one or two bytes.
+     */
+    private static byte[] encodeRanges(List<long[]> ranges) {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(ranges.size() * 4);
+        long previous = 0;
+        for (long[] range : ranges) {
+            writeVarint(encoded, range[0] - previous);
+            writeVarint(encoded, range[1] - range[0]);
+            previous = range[1];
+        }
+        return encoded.toByteArray();
+    }
+
+    private static List<long[]> decodeRanges(byte[] encoded) {
+        List<long[]> ranges = new ArrayList<>();
+        long previous = 0;
+        long[] values = new long[2];
+        int count = 0;
+        long value = 0;
+        int shift = 0;
+        for (byte b : encoded) {
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) != 0) {
+                shift += 7;
+                continue;
+            }
+            values[count++] = value;
+            value = 0;
+            shift = 0;
+            if (count == 2) {
+                long first = previous + values[0];
+                previous = first + values[1];
+                ranges.add(new long[]{first, previous});
+                count = 0;
+            }
+        }
+        return ranges;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
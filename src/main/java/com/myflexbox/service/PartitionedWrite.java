@@ -0,0 +1,308 @@
+package com.myflexbox.service;
+
+import com.myflexbox.entity.Address;
+import com.myflexbox.entity.User;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * One all-or-nothing import spread over several writer threads.
+ * Users are hash-partitioned by country and postcode, so rows of one area always go to the same writer.
+ * Every writer inserts its partition over its own connection in one open transaction, with ids from its
+ * own sequence blocks and batched statements, so writers neither share locks nor contend on the sequences.
+ * Each writer has a small bounded queue: when a writer falls behind, the reading thread waits for it instead
+ * of buffering the file in memory.
+ * <p>
+ * {@link #commit(ObjLongConsumer)} is the commit barrier: it waits until every writer has written all its rows
+ * and only then commits the partitions. The id ranges every partition wrote are handed out before the first
+ * commit, so they can be stored and the rows deleted if the application stops halfway through the commits.
+ * If a commit fails after other partitions were committed, their rows are deleted again by these ranges.
+ * Closing the write rolls back whatever was not committed.
+ */
+@Slf4j
+public class PartitionedWrite implements AutoCloseable {
+
+    private static final List<User> END_OF_INPUT = new ArrayList<>();
+    private static final int QUEUED_BATCHES = 4;
+    private static final long HAND_OVER_TIMEOUT_MILLIS = 100;
+    private static final AtomicInteger WRITE_NUMBER = new AtomicInteger();
+
+    private final EntityCacheEvictor entityCacheEvictor;
+    private final int batchSize;
+    private final ExecutorService executor;
+    private final List<Partition> partitions = new ArrayList<>();
+    private final List<BlockingQueue<List<User>>> queues = new ArrayList<>();
+    private final List<Future<?>> writers = new ArrayList<>();
+    private final List<List<User>> buffers = new ArrayList<>();
+    private boolean committed;
+
+    PartitionedWrite(DataSource dataSource, SequenceIdAllocator sequenceIdAllocator,
+                     EntityCacheEvictor entityCacheEvictor, int writerCount, int batchSize) throws SQLException {
+        this.entityCacheEvictor = entityCacheEvictor;
+        this.batchSize = batchSize;
+        int writeNumber = WRITE_NUMBER.incrementAndGet();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(writerCount, runnable -> {
+            Thread thread = new Thread(runnable, "import-writer-" + writeNumber + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int i = 0; i < writerCount; i++) {
+                Partition partition = new Partition(dataSource.getConnection(),
+                        sequenceIdAllocator.idSupplier("users_seq"), sequenceIdAllocator.idSupplier("address_seq"));
+                BlockingQueue<List<User>> queue = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+                partitions.add(partition);
+                queues.add(queue);
+                buffers.add(new ArrayList<>(batchSize));
+                writers.add(executor.submit(() -> {
+                    partition.drain(queue);
+                    return null;
+                }));
+            }
+        } catch (SQLException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a user to the batch of its partition, handing the batch to the partition's writer once full.
+     *
+     * @param user The user with its address.
+     * @throws IllegalStateException if the partition's writer failed.
+     */
+    public void write(User user) {
+        int partition = Math.floorMod(partitionKey(user), partitions.size());
+        List<User> buffer = buffers.get(partition);
+        buffer.add(user);
+        if (buffer.size() >= batchSize) {
+            handOver(partition, buffer);
+            buffers.set(partition, new ArrayList<>(batchSize));
+        }
+    }
+
+    /**
+     * Waits until all partitions are written, then commits them.
+     *
+     * @param onPrepared Called with the ids written by each partition and the number of users written once every
+     *                   partition is written, before the first partition is committed.
+     * @return The number of users written.
+     * @throws IllegalStateException if a writer or a commit failed; nothing remains imported in that case.
+     */
+    public long commit(ObjLongConsumer<List<WrittenIds>> onPrepared) {
+        for (int partition = 0; partition < partitions.size(); partition++) {
+            if (!buffers.get(partition).isEmpty()) {
+                handOver(partition, buffers.get(partition));
+            }
+            handOver(partition, END_OF_INPUT);
+        }
+        for (int partition = 0; partition < partitions.size(); partition++) {
+            awaitWriter(partition);
+        }
+        long written = partitions.stream().mapToLong(Partition::getWritten).sum();
+        List<WrittenIds> writtenIds = new ArrayList<>(partitions.size());
+        for (int partition = 0; partition < partitions.size(); partition++) {
+            writtenIds.add(new WrittenIds(partition, partitions.get(partition).userIdRanges,
+                    partitions.get(partition).addressIdRanges));
+        }
+        onPrepared.accept(writtenIds, written);
+
+        int committedPartitions = 0;
+        try {
+            for (Partition partition : partitions) {
+                partition.commit();
+                committedPartitions++;
+            }
+            committed = true;
+            log.info("Committed {} users written by {} partitions", written, partitions.size());
+            return written;
+        } catch (SQLException e) {
+            revert(partitions.subList(0, committedPartitions));
+            throw new IllegalStateException("Committing a writer partition failed, the import was reverted", e);
+        } finally {
+            entityCacheEvictor.evictImportedEntities();
+        }
+    }
+
+    /**
+     * Stops the writers and rolls back and closes the connections of all partitions not committed.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (Partition partition : partitions) {
+            partition.close(!committed);
+        }
+    }
+
+    private static int partitionKey(User user) {
+        Address address = user.getAddress();
+        return address == null ? 0 : Objects.hash(address.getCountry(), address.getPostcode());
+    }
+
+    private void handOver(int partition, List<User> batch) {
+        try {
+            while (!queues.get(partition).offer(batch, HAND_OVER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (writers.get(partition).isDone()) {
+                    awaitWriter(partition); // Rethrows the writer's failure
+                    throw new IllegalStateException("Writer partition " + partition + " stopped");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while handing rows to writer partition " + partition, e);
+        }
+    }
+
+    private void awaitWriter(int partition) {
+        try {
+            writers.get(partition).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for writer partition " + partition, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Writer partition " + partition + " failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void revert(List<Partition> committedPartitions) {
+        for (Partition partition : committedPartitions) {
+            try {
+                partition.deleteWritten();
+            } catch (SQLException e) {
+                log.error("Unable to revert a committed writer partition, its rows remain imported", e);
+            }
+        }
+    }
+
+    /**
+     * The ids one partition inserted, as ascending ranges {@code {first, last}} of consecutive ids.
+     *
+     * @param partition       The index of the partition.
+     * @param userIdRanges    The ranges of user ids.
+     * @param addressIdRanges The ranges of address ids.
+     */
+    public record WrittenIds(int partition, List<long[]> userIdRanges, List<long[]> addressIdRanges) {
+    }
+
+    /**
+     * The connection, id blocks and statements of one writer.
+     */
+    private static class Partition {
+
+        private final Connection connection;
+        private final LongSupplier userIds;
+        private final LongSupplier addressIds;
+        private final List<long[]> userIdRanges = new ArrayList<>();
+        private final List<long[]> addressIdRanges = new ArrayList<>();
+        private long written;
+
+        Partition(Connection connection, LongSupplier userIds, LongSupplier addressIds) throws SQLException {
+            this.connection = connection;
+            this.userIds = userIds;
+            this.addressIds = addressIds;
+            connection.setAutoCommit(false);
+        }
+
+        long getWritten() {
+            return written;
+        }
+
+        void drain(BlockingQueue<List<User>> queue) throws InterruptedException, SQLException {
+            try (PreparedStatement insertAddress = connection.prepareStatement(
+                    "INSERT INTO address (id, street, postcode, country) VALUES (?, ?, ?, ?)");
+                 PreparedStatement insertUser = connection.prepareStatement(
+                         "INSERT INTO users (id, first_name, last_name, address_id) VALUES (?, ?, ?, ?)")) {
+                List<User> batch;
+                while ((batch = queue.take()) != END_OF_INPUT) {
+                    insert(batch, insertAddress, insertUser);
+                }
+            }
+        }
+
+        private void insert(List<User> batch, PreparedStatement insertAddress, PreparedStatement insertUser)
+                throws SQLException {
+            for (User user : batch) {
+                Address address = user.getAddress();
+                long addressId = addressIds.getAsLong();
+                long userId = userIds.getAsLong();
+                insertAddress.setLong(1, addressId);
+                insertAddress.setString(2, address.getStreet());
+                insertAddress.setString(3, address.getPostcode());
+                insertAddress.setString(4, address.getCountry());
+                insertAddress.addBatch();
+                insertUser.setLong(1, userId);
+                insertUser.setString(2, user.getFirstName());
+                insertUser.setString(3, user.getLastName());
+                insertUser.setLong(4, addressId);
+                insertUser.addBatch();
+                track(addressIdRanges, addressId);
+                track(userIdRanges, userId);
+            }
+            insertAddress.executeBatch();
+            insertUser.executeBatch();
+            written += batch.size();
+        }
+
+        /**
+         * Records an id as a range of consecutive ids, which stays small as ids come in blocks.
+         */
+        private static void track(List<long[]> ranges, long id) {
+            long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if (last != null && last[1] + 1 == id) {
+                last[1] = id;
+            } else {
+                ranges.add(new long[]{id, id});
+            }
+        }
+
+        void commit() throws SQLException {
+            connection.commit();
+        }
+
+        void deleteWritten() throws SQLException {
+            delete("DELETE FROM users WHERE id BETWEEN ? AND ?", userIdRanges);
+            delete("DELETE FROM address WHERE id BETWEEN ? AND ?", addressIdRanges);
+            connection.commit();
+        }
+
+        private void delete(String sql, List<long[]> ranges) throws SQLException {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (long[] range : ranges) {
+                    statement.setLong(1, range[0]);
+                    statement.setLong(2, range[1]);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+
+        void close(boolean rollback) {
+            try (connection) {
+                if (rollback) {
+                    connection.rollback();
+                }
+            } catch (SQLException e) {
+                log.warn("Unable to roll back and close a writer connection", e);
+            }
+        }
+    }
+}
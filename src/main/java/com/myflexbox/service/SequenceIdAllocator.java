@@ -0,0 +1,64 @@
+package com.myflexbox.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Reserves blocks of ids from the entity sequences for writers that insert rows without Hibernate.
+ * Blocks follow Hibernate's pooled optimizer: a sequence value {@code v} owns the ids
+ * {@code v - ALLOCATION_SIZE + 1 .. v}, so ids handed out here never collide with ids Hibernate assigns.
+ */
+@Component
+public class SequenceIdAllocator {
+
+    /**
+     * Sequence increment shared by all entity sequences and the blocks reserved here.
+     */
+    public static final int ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Dialect dialect;
+
+    public SequenceIdAllocator(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+    }
+
+    /**
+     * Returns a supplier of ids that reserves a new block from the sequence whenever the current one is used up.
+     * The supplier is not thread safe; concurrent writers each use their own.
+     *
+     * @param sequenceName The name of the entity sequence.
+     * @return The id supplier.
+     */
+    public LongSupplier idSupplier(String sequenceName) {
+        return new LongSupplier() {
+            private long next = 1;
+            private long last = 0;
+
+            @Override
+            public long getAsLong() {
+                if (next > last) {
+                    long hi = nextSequenceValue(sequenceName);
+                    next = Math.max(hi - ALLOCATION_SIZE + 1, 1);
+                    last = hi;
+                }
+                return next++;
+            }
+        };
+    }
+
+    private long nextSequenceValue(String sequenceName) {
+        String sql = dialect.getSequenceSupport().getSequenceNextValString(sequenceName);
+        Long value = jdbcTemplate.queryForObject(sql, Long.class);
+        if (value == null) {
+            throw new IllegalStateException("Sequence " + sequenceName + " returned no value");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,14 @@
+package com.myflexbox.service;
+
+import java.nio.file.Path;
+
+/**
+ * An uploaded CSV file copied into the staging directory.
+ *
+ * @param fileName The name of the file as it was uploaded.
+ * @param hash     SHA-256 of the file content, used to recognise a re-upload of the same file.
+ * @param path     Location of the staged copy.
+ * @param size     Size of the file in bytes.
+ */
+public record StagedFile(String fileName, String hash, Path path, long size) {
+}
@@ -0,0 +1,93 @@
+package com.myflexbox.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Output stream writing an upload into the staging directory while hashing it.
+ * The content goes to a temporary part file until {@link #finish()} moves it to its content-addressed name.
+ */
+public class StagingOutputStream extends OutputStream {
+
+    private final String fileName;
+    private final Path stagingDir;
+    private final Path partFile;
+    private final MessageDigest digest;
+    private final OutputStream out;
+    private long size;
+    private boolean closed;
+
+    StagingOutputStream(Path stagingDir, String fileName) throws IOException {
+        this.fileName = fileName;
+        this.stagingDir = stagingDir;
+        this.partFile = Files.createTempFile(stagingDir, "upload-", ".part");
+        this.digest = sha256();
+        this.out = new DigestOutputStream(Files.newOutputStream(partFile), digest);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        size += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            out.close();
+        }
+    }
+
+    /**
+     * Completes the staging and moves the content to its final name.
+     *
+     * @return The staged file.
+     * @throws IOException if the file cannot be written or moved.
+     */
+    public StagedFile finish() throws IOException {
+        close();
+        String hash = HexFormat.of().formatHex(digest.digest());
+        Path target = stagingDir.resolve(hash + ".csv");
+        if (Files.exists(target)) {
+            // Same content was staged before; keep the existing copy an interrupted job may still be reading
+            Files.delete(partFile);
+        } else {
+            Files.move(partFile, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return new StagedFile(fileName, hash, target, size);
+    }
+
+    /**
+     * Discards the partially written content.
+     */
+    public void abort() {
+        try {
+            close();
+            Files.deleteIfExists(partFile);
+        } catch (IOException e) {
+            // Nothing more to do, the part file is left for manual cleanup
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.myflexbox.service;
+
+import com.myflexbox.beans.ExportProperties;
+import com.myflexbox.mapper.CsvColumnMapper;
+import com.myflexbox.repository.UserRepository;
+import com.myflexbox.repository.UserSummary;
+import com.opencsv.CSVWriterBuilder;
+import com.opencsv.ICSVWriter;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams all users with their addresses as CSV, in the same format the importer reads.
+ * Rows are read page by page with keyset pagination and written straight to the output stream,
+ * so memory use does not grow with the size of the table.
+ */
+@Service
+public class UserExportService {
+
+    private static final String[] HEADER = {"id", "first", "last", "address", "zip", "country"};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UserRepository userRepository;
+    private final ExportProperties exportProperties;
+
+    public UserExportService(UserRepository userRepository, ExportProperties exportProperties) {
+        this.userRepository = userRepository;
+        this.exportProperties = exportProperties;
+    }
+
+    /**
+     * Writes all users to the given stream. The stream itself is left open.
+     *
+     * @param outputStream The stream to write the CSV to.
+     * @param gzip         Whether to gzip the CSV.
+     * @throws IOException if the stream cannot be written.
+     */
+    public void writeCsv(OutputStream outputStream, boolean gzip) throws IOException {
+        GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(outputStream, BUFFER_SIZE) : null;
+        BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(gzip ? gzipStream : outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        ICSVWriter csvWriter = new CSVWriterBuilder(writer)
+                .withSeparator(CsvColumnMapper.CSV_SEPARATOR)
+                .build();
+
+        csvWriter.writeNext(HEADER, false);
+        int pageSize = exportProperties.getPageSize();
+        long lastId = 0;
+        List<UserSummary> page;
+        do {
+            page = userRepository.findSummariesAfter(lastId, pageSize);
+            for (UserSummary user : page) {
+                csvWriter.writeNext(new String[]{
+                        String.valueOf(user.getId()),
+                        user.getFirstName(),
+                        user.getLastName(),
+                        user.getStreet(),
+                        user.getPostcode(),
+                        user.getCountry()
+                }, false);
+            }
+            if (!page.isEmpty()) {
+                lastId = page.get(page.size() - 1).getId();
+            }
+            csvWriter.flush();
+        } while (page.size() == pageSize);
+
+        if (gzipStream != null) {
+            gzipStream.finish();
+        }
+        outputStream.flush();
+    }
+}
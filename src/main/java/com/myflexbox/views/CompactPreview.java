@@ -0,0 +1,99 @@
+package com.myflexbox.views;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.Div;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.data.renderer.LitRenderer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Preview mode for wide CSV files.
+ * Instead of one grid column per CSV column, which makes Vaadin send every row as an object with one key per
+ * column, the grid gets a single column whose renderer receives the cells of the current column window as one
+ * array and lays them out in the browser. Only the columns of the window are serialized and sent; the mapping
+ * fields of the window are shown in a strip above the grid, and the window is moved with the column buttons.
+ */
+public class CompactPreview extends Div {
+
+    private static final String ROW_TEMPLATE =
+            "<div class=\"compact-row\">${item.cells.map(cell => html`<span>${cell}</span>`)}</div>";
+
+    private final Grid<String[]> grid;
+    private final int windowSize;
+    private final Div mappingStrip = new Div();
+    private final Span windowLabel = new Span();
+    private final Button previousButton = new Button("◀ Columns", click -> showWindow(windowStart - windowSize));
+    private final Button nextButton = new Button("Columns ▶", click -> showWindow(windowStart + windowSize));
+    private List<Div> mappingHeaders = List.of();
+    private int windowStart;
+
+    /**
+     * @param grid       The preview grid rendered in compact mode while this preview is shown.
+     * @param windowSize The number of columns shown at a time.
+     */
+    public CompactPreview(Grid<String[]> grid, int windowSize) {
+        this.grid = grid;
+        this.windowSize = windowSize;
+
+        Div navigation = new Div(previousButton, windowLabel, nextButton);
+        navigation.addClassName("column-navigation");
+        mappingStrip.addClassName("mapping-strip");
+        addClassName("compact-preview");
+        add(navigation, mappingStrip);
+        setVisible(false);
+    }
+
+    /**
+     * Switches the grid to compact mode for a newly loaded file.
+     *
+     * @param mappingHeaders The mapping fields of every CSV column, in column order.
+     */
+    public void show(List<Div> mappingHeaders) {
+        this.mappingHeaders = mappingHeaders;
+        mappingStrip.removeAll();
+        mappingStrip.add(mappingHeaders.toArray(Component[]::new));
+
+        grid.removeAllColumns();
+        grid.addColumn(LitRenderer.<String[]>of(ROW_TEMPLATE).withProperty("cells", this::windowCells))
+                .setFlexGrow(1);
+        showWindow(0);
+        setVisible(true);
+    }
+
+    /**
+     * Leaves compact mode, discarding the mapping fields of the previous file.
+     */
+    public void hide() {
+        mappingHeaders = List.of();
+        mappingStrip.removeAll();
+        grid.getStyle().remove("--compact-columns");
+        setVisible(false);
+    }
+
+    private void showWindow(int start) {
+        int columnCount = mappingHeaders.size();
+        windowStart = Math.max(0, Math.min(start, columnCount - 1));
+        int windowEnd = Math.min(columnCount, windowStart + windowSize);
+
+        for (int i = 0; i < columnCount; i++) {
+            mappingHeaders.get(i).setVisible(i >= windowStart && i < windowEnd);
+        }
+        // The strip and the rendered rows share the column count, so the mapping fields line up with the cells
+        String columns = String.valueOf(windowEnd - windowStart);
+        mappingStrip.getStyle().set("--compact-columns", columns);
+        grid.getStyle().set("--compact-columns", columns);
+        windowLabel.setText("Columns " + (windowStart + 1) + "–" + windowEnd + " of " + columnCount);
+        previousButton.setEnabled(windowStart > 0);
+        nextButton.setEnabled(windowEnd < columnCount);
+        grid.getDataProvider().refreshAll();
+    }
+
+    private List<String> windowCells(String[] row) {
+        int windowEnd = Math.min(row.length, windowStart + windowSize);
+        return windowStart < windowEnd ? Arrays.asList(row).subList(windowStart, windowEnd) : List.of();
+    }
+}
@@ -1,26 +1,42 @@
 package com.myflexbox.views;
 
-import com.myflexbox.entity.User;
+import com.myflexbox.beans.PreviewProperties;
+import com.myflexbox.dedup.DuplicateMatch;
 import com.myflexbox.mapper.CsvColumnMapper;
 import com.myflexbox.mapper.CsvMapping;
-import com.myflexbox.repository.UserRepository;
+import com.myflexbox.service.DuplicateDetectionService;
+import com.myflexbox.service.ImportService;
+import com.myflexbox.service.ImportStagingService;
+import com.myflexbox.service.StagedFile;
+import com.myflexbox.service.UserExportService;
 import com.vaadin.flow.component.ClickEvent;
 import com.vaadin.flow.component.ComponentEventListener;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
 import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.checkbox.Checkbox;
 import com.vaadin.flow.component.combobox.ComboBox;
 import com.vaadin.flow.component.dependency.CssImport;
 import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.Anchor;
 import com.vaadin.flow.component.html.Div;
+import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.upload.Upload;
-import com.vaadin.flow.component.upload.receivers.MemoryBuffer;
 import com.vaadin.flow.router.Route;
+import com.vaadin.flow.server.Command;
+import com.vaadin.flow.server.StreamResource;
 import com.vaadin.flow.spring.annotation.UIScope;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 /**
  * Vaadin view class to handle the import of CSV files into a grid and the mapping of CSV columns.
@@ -32,17 +48,38 @@ import java.util.List;
 @UIScope
 public class GridCsvImport extends VerticalLayout {
 
-    private final UserRepository userRepository;
+    private final ImportService importService;
+    private final ImportStagingService importStagingService;
+    private final UserExportService userExportService;
+    private final PreviewProperties previewProperties;
+    private final DuplicateDetectionService duplicateDetectionService;
     private final CsvColumnMapper csvColumnMapper = new CsvColumnMapper();
+    private final List<String[]> previewRows = new ArrayList<>();
+    private final Span parseStatus = new Span();
+    private final Checkbox mergeDuplicates = new Checkbox("Merge duplicates on save");
+    private StagedFile stagedFile;
+    private Button saveButton;
+    private Grid.Column<String[]> duplicateColumn;
+    private CompactPreview compactPreview;
 
     /**
      * Constructor for the GridCsvImport view.
      *
-     * @param userRepository The user repository used to save the imported data.
+     * @param importService             The service importing staged files into the database.
+     * @param importStagingService      The service staging uploaded files for import.
+     * @param userExportService         The service exporting the saved users as CSV.
+     * @param previewProperties         The settings of the preview grid.
+     * @param duplicateDetectionService The service looking for near-duplicate people.
      */
     @Autowired
-    public GridCsvImport(UserRepository userRepository) {
-        this.userRepository = userRepository;
+    public GridCsvImport(ImportService importService, ImportStagingService importStagingService,
+                         UserExportService userExportService, PreviewProperties previewProperties,
+                         DuplicateDetectionService duplicateDetectionService) {
+        this.importService = importService;
+        this.importStagingService = importStagingService;
+        this.userExportService = userExportService;
+        this.previewProperties = previewProperties;
+        this.duplicateDetectionService = duplicateDetectionService;
         initializeComponents(); // Method call to initialize UI components
     }
 
@@ -50,11 +87,15 @@ public class GridCsvImport extends VerticalLayout {
      * Initializes the UI components including upload, grid, and buttons.
      */
     private void initializeComponents() {
-        MemoryBuffer buffer = new MemoryBuffer(); // Buffer to hold uploaded CSV file content
-        Upload upload = new Upload(buffer); // Upload component to handle CSV file uploads
         Grid<String[]> grid = new Grid<>(); // Grid component to display CSV content
+        // Mapping strip and column window for files too wide to send every column of every row
+        compactPreview = new CompactPreview(grid, previewProperties.getCompactWindowColumns());
+        // Receiver staging the upload and filling the grid while the file is still being transferred
+        StreamingCsvReceiver receiver = new StreamingCsvReceiver(
+                importStagingService, this, createPreviewListener(grid), previewProperties.getMaxRows());
+        Upload upload = new Upload(receiver); // Upload component to handle CSV file uploads
 
-        configureUpload(upload, grid, buffer); // Configuring the upload component
+        configureUpload(upload, receiver); // Configuring the upload component
         configureGrid(grid);
 
         Button resetButton = createButton("Reset Combo boxes values", click -> csvColumnMapper.resetMapping());
@@ -62,34 +103,96 @@ public class GridCsvImport extends VerticalLayout {
             csvColumnMapper.resetMapping();
             clearGrid(grid);
             upload.clearFileList();
+            stagedFile = null;
+            parseStatus.setText("");
         });
-        Button saveButton = createButton("Save", click -> saveData(grid));
+        saveButton = createButton("Save", click -> saveData(grid));
         Button clearGridData = createButton("Remove grid data", click -> clearGrid(grid));
+        Button duplicatesButton = createButton("Find duplicates", click -> findDuplicates(grid));
 
         Div buttonDiv = new Div();
         buttonDiv.addClassName("button-div");
-        buttonDiv.add(saveButton, cancelButton, resetButton, clearGridData);
+        buttonDiv.add(saveButton, cancelButton, resetButton, clearGridData, duplicatesButton, mergeDuplicates,
+                createExportDownload());
 
         // Adding the upload component, grid, and buttons to the layout
-        add(upload, grid, buttonDiv);
+        add(upload, parseStatus, compactPreview, grid, buttonDiv);
     }
 
     /**
      * Configures the upload component for accepting CSV files and handling successful uploads and rejections.
      *
-     * @param upload The upload component.
-     * @param grid   The grid component to display the CSV content.
-     * @param buffer The buffer to hold the uploaded CSV content.
+     * @param upload   The upload component.
+     * @param receiver The receiver parsing and staging the uploaded CSV content.
      */
-    private void configureUpload(Upload upload, Grid<String[]> grid, MemoryBuffer buffer) {
+    private void configureUpload(Upload upload, StreamingCsvReceiver receiver) {
         upload.setAcceptedFileTypes(".csv");
         upload.setDropAllowed(true);
-        // Listener to handle successful file uploads
-        upload.addSucceededListener(event -> csvColumnMapper.loadCsvToGrid(grid, buffer));
+        // Listener forgetting the previous file, it cannot be saved while another one is uploaded
+        upload.addStartedListener(event -> stagedFile = null);
+        // Listener to handle successful file uploads, the grid has already been filled while uploading
+        upload.addSucceededListener(event -> {
+            try {
+                stagedFile = receiver.completeUpload();
+            } catch (IOException e) {
+                CustomNotification.show("Upload failed: " + e.getMessage(), "error");
+            }
+        });
+        // Listener to handle interrupted uploads, the partial content is discarded without being staged
+        upload.addFailedListener(event -> {
+            receiver.abortUpload();
+            stagedFile = null;
+            CustomNotification.show("Upload failed: " + event.getReason().getMessage(), "error");
+        });
         // Listener to handle rejected files
         upload.addFileRejectedListener(fileRejectedEvent -> CustomNotification.show("File rejected: " + fileRejectedEvent.getErrorMessage()));
     }
 
+    /**
+     * Creates the listener filling the grid with the rows parsed during the upload.
+     *
+     * @param grid The grid component to display the CSV content.
+     * @return The listener receiving the parsed content.
+     */
+    private StreamingCsvReceiver.Listener createPreviewListener(Grid<String[]> grid) {
+        return new StreamingCsvReceiver.Listener() {
+            @Override
+            public void headerParsed(String[] header) {
+                previewRows.clear();
+                if (header.length > previewProperties.getCompactColumnThreshold()) {
+                    compactPreview.show(csvColumnMapper.initializeMappingHeaders(header));
+                } else {
+                    compactPreview.hide();
+                    csvColumnMapper.initializeColumns(grid, header);
+                }
+                grid.setItems(previewRows);
+                parseStatus.setText("Reading rows...");
+            }
+
+            @Override
+            public void rowsParsed(List<String[]> rows) {
+                previewRows.addAll(rows);
+                grid.getDataProvider().refreshAll();
+                parseStatus.setText("Reading rows... " + previewRows.size() + " loaded");
+            }
+
+            @Override
+            public void parsingFinished(long rowCount) {
+                parseStatus.setText(rowCount > previewRows.size()
+                        ? rowCount + " rows, showing the first " + previewRows.size()
+                        : rowCount + " rows");
+            }
+
+            @Override
+            public void parsingFailed(Exception e) {
+                previewRows.clear();
+                compactPreview.hide();
+                csvColumnMapper.showLoadError(grid, e);
+                parseStatus.setText("");
+            }
+        };
+    }
+
     /**
      * Configures the grid component by clearing existing columns.
      *
@@ -113,7 +216,38 @@ public class GridCsvImport extends VerticalLayout {
     }
 
     /**
-     * Saves the mapped data from the grid by validating, mapping, and persisting the data to the repository.
+     * Creates the download link exporting all saved users as CSV, optionally gzipped.
+     *
+     * @return A layout holding the export button and the gzip option.
+     */
+    private Div createExportDownload() {
+        Anchor download = new Anchor(createExportResource(false), "");
+        download.getElement().setAttribute("download", true);
+        download.add(createButton("Export CSV", click -> { }));
+
+        Checkbox gzip = new Checkbox("gzip");
+        gzip.addValueChangeListener(event -> download.setHref(createExportResource(event.getValue())));
+
+        Div exportDiv = new Div(download, gzip);
+        exportDiv.addClassName("export-div");
+        return exportDiv;
+    }
+
+    /**
+     * Creates a stream resource writing the CSV export directly to the download response.
+     *
+     * @param gzip Whether the CSV should be gzipped.
+     * @return The stream resource.
+     */
+    private StreamResource createExportResource(boolean gzip) {
+        StreamResource resource = new StreamResource(gzip ? "users.csv.gz" : "users.csv",
+                (outputStream, session) -> userExportService.writeCsv(outputStream, gzip));
+        resource.setContentType(gzip ? "application/gzip" : "text/csv");
+        return resource;
+    }
+
+    /**
+     * Validates the mapping against the grid data and imports the staged file with it.
      *
      * @param grid The grid component containing the CSV data.
      */
@@ -123,33 +257,133 @@ public class GridCsvImport extends VerticalLayout {
             return;
         }
 
-        // Extract the selected CsvMapping from each ComboBox
+        if (stagedFile == null) {
+            CustomNotification.show("Please upload the CSV file again.");
+            return;
+        }
+
+        importStagedFile(selectedMappings(), csvColumnMapper.getColumnTransforms());
+    }
+
+    /**
+     * Extracts the selected CsvMapping from each ComboBox.
+     *
+     * @return The column mappings, in column order.
+     */
+    private List<CsvMapping> selectedMappings() {
         List<CsvMapping> mappings = new ArrayList<>();
         for (ComboBox<CsvMapping> comboBox : csvColumnMapper.getColumnMappingComboBoxes()) {
             mappings.add(comboBox.getValue());
         }
+        return mappings;
+    }
 
-        List<User> users = csvColumnMapper.mapCsvToUsers(entries, mappings); // Pass the extracted mappings
-
-        if (users.isEmpty()) {
-            CustomNotification.show("No valid data to import.");
+    /**
+     * Looks for near-duplicate people in the whole staged file and among the saved users, and flags the
+     * duplicates shown in the preview in an extra column.
+     *
+     * @param grid The grid component containing the CSV data.
+     */
+    private void findDuplicates(Grid<String[]> grid) {
+        List<String[]> entries = csvColumnMapper.retrieveEntries(grid);
+        if (!csvColumnMapper.validateCsvAndMapping(entries, csvColumnMapper.getColumnMappingComboBoxes())) {
             return;
         }
+        if (stagedFile == null) {
+            CustomNotification.show("Please upload the CSV file again.");
+            return;
+        }
+
+        try {
+            List<DuplicateMatch> duplicates = duplicateDetectionService.detect(
+                    stagedFile.path(), selectedMappings(), csvColumnMapper.getColumnTransforms(), true);
+            showDuplicates(grid, duplicates);
+            CustomNotification.show(duplicates.isEmpty()
+                    ? "No duplicates found."
+                    : duplicates.size() + " suspected duplicates found.");
+        } catch (Exception e) {
+            CustomNotification.show("An error occurred while looking for duplicates: " + e.getMessage(), "error");
+        }
+    }
+
+    /**
+     * Adds (or replaces) the grid column naming the original of each previewed duplicate row.
+     *
+     * @param grid       The grid component containing the CSV data.
+     * @param duplicates The duplicates found in the staged file.
+     */
+    private void showDuplicates(Grid<String[]> grid, List<DuplicateMatch> duplicates) {
+        Map<String[], DuplicateMatch> byRow = new IdentityHashMap<>();
+        for (DuplicateMatch match : duplicates) {
+            long rowIndex = match.duplicate().key();
+            if (!match.duplicate().existing() && rowIndex < previewRows.size()) {
+                byRow.put(previewRows.get((int) rowIndex), match);
+            }
+        }
 
-        saveUsers(users);
+        if (duplicateColumn != null && grid.getColumns().contains(duplicateColumn)) {
+            grid.removeColumn(duplicateColumn);
+        }
+        duplicateColumn = grid.addColumn(row -> describeOriginal(byRow.get(row)))
+                .setHeader("Duplicate of")
+                .setAutoWidth(true)
+                .setFrozen(true);
+        List<Grid.Column<String[]>> columns = new ArrayList<>(grid.getColumns());
+        columns.remove(duplicateColumn);
+        columns.add(0, duplicateColumn);
+        grid.setColumnOrder(columns);
+    }
+
+    private static String describeOriginal(DuplicateMatch match) {
+        if (match == null) {
+            return "";
+        }
+        String original = match.original().existing()
+                ? "saved user " + match.original().key()
+                : "row " + (match.original().key() + 1);
+        return String.format(Locale.ROOT, "%s (%.2f)", original, match.score());
     }
 
     /**
-     * Saves the list of User objects to the repository.
+     * Imports the staged file chunk by chunk. A previously interrupted import of the same file and mapping
+     * continues from its last committed chunk.
+     * The import runs on a background thread, so the request does not hold the session lock while the file is
+     * imported or the chunks of a cluster import are waited for; progress and the result are pushed to the view.
      *
-     * @param users The list of User objects to be saved.
+     * @param mappings   The column mappings for the CSV data.
+     * @param transforms The transformation expression per column.
      */
-    private void saveUsers(List<User> users) {
+    private void importStagedFile(List<CsvMapping> mappings, List<String> transforms) {
+        UI ui = UI.getCurrent();
+        saveButton.setEnabled(false);
+        parseStatus.setText("Saving...");
+        importService.submitImport(stagedFile, mappings, transforms, mergeDuplicates.getValue(),
+                        rows -> access(ui, () -> parseStatus.setText("Saving... " + rows + " rows imported")))
+                .whenComplete((job, error) -> access(ui, () -> {
+                    saveButton.setEnabled(true);
+                    parseStatus.setText("");
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        CustomNotification.show("An error occurred while saving the data: " + cause.getMessage(), "error");
+                    } else if (job.getUsersImported() == 0) {
+                        CustomNotification.show("No valid data to import.");
+                    } else {
+                        CustomNotification.show("Data saved successfully!", "success");
+                    }
+                }));
+    }
+
+    /**
+     * Runs a command with the session lock of the UI from a background thread, unless the UI is gone.
+     *
+     * @param ui      The UI the view is shown in.
+     * @param command The command updating the view.
+     */
+    private static void access(UI ui, Command command) {
         try {
-            userRepository.saveAll(users);
-            CustomNotification.show("Data saved successfully!", "success");
-        } catch (Exception e) {
-            CustomNotification.show("An error occurred while saving the data: " + e.getMessage(), "error");
+            ui.access(command);
+        } catch (UIDetachedException e) {
+            // The view is gone, nobody is waiting for the result anymore
         }
     }
 
@@ -159,6 +393,7 @@ public class GridCsvImport extends VerticalLayout {
      * @param grid The grid component to be cleared.
      */
     private void clearGrid(Grid<String[]> grid) {
+        compactPreview.hide();
         grid.removeAllColumns(); // Clear the columns
         grid.setItems(new ArrayList<>()); // Clear the items
     }
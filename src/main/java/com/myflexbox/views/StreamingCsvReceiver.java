@@ -0,0 +1,312 @@
+package com.myflexbox.views;
+
+import com.myflexbox.mapper.CsvColumnMapper;
+import com.myflexbox.service.ImportStagingService;
+import com.myflexbox.service.StagedFile;
+import com.myflexbox.service.StagingOutputStream;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.exceptions.CsvValidationException;
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.UIDetachedException;
+import com.vaadin.flow.component.upload.Receiver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Upload receiver that parses the CSV while it is still being uploaded.
+ * Every received block is written to the staging directory and handed to a parser thread through a bounded
+ * queue. The parser reports the header and the first rows to the owning view as they arrive, so the mapping
+ * UI is usable long before a large file has finished uploading. When the parser falls behind, the queue fills
+ * up and the upload request thread blocks, which throttles the transfer instead of buffering the file in memory.
+ * The upload handler closes the stream of failed and interrupted uploads too, so the content is only staged once
+ * the owning view reports the upload as succeeded through {@link #completeUpload()}, and {@link #abortUpload()}
+ * discards it otherwise.
+ */
+public class StreamingCsvReceiver implements Receiver {
+
+    private static final int QUEUE_CAPACITY = 256;
+    private static final int ROWS_PER_UPDATE = 500;
+    private static final long UPDATE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    /**
+     * Callbacks for the parsed content, invoked with the owning UI locked.
+     */
+    public interface Listener {
+        void headerParsed(String[] header);
+
+        void rowsParsed(List<String[]> rows);
+
+        void parsingFinished(long rowCount);
+
+        void parsingFailed(Exception e);
+    }
+
+    private final ImportStagingService importStagingService;
+    private final Component owner;
+    private final Listener listener;
+    private final int maxPreviewRows;
+    private volatile UploadOutputStream currentUpload;
+
+    /**
+     * @param importStagingService The service staging the uploaded content.
+     * @param owner                The component whose UI receives the parser callbacks.
+     * @param listener             The callbacks for the parsed content.
+     * @param maxPreviewRows       The number of rows reported to the listener; later rows are only counted.
+     */
+    public StreamingCsvReceiver(ImportStagingService importStagingService, Component owner, Listener listener, int maxPreviewRows) {
+        this.importStagingService = importStagingService;
+        this.owner = owner;
+        this.listener = listener;
+        this.maxPreviewRows = maxPreviewRows;
+    }
+
+    @Override
+    public OutputStream receiveUpload(String fileName, String mimeType) {
+        abortUpload();
+        try {
+            StagingOutputStream staging = importStagingService.openStagingOutput(fileName);
+            BlockingPipe pipe = new BlockingPipe();
+            Thread parser = new Thread(() -> parse(pipe), "csv-upload-parser");
+            parser.setDaemon(true);
+            parser.start();
+            currentUpload = new UploadOutputStream(staging, pipe, parser);
+            return currentUpload;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to stage upload " + fileName, e);
+        }
+    }
+
+    /**
+     * Stages the content of the last upload, to be called once the upload has been reported as succeeded.
+     * Lets the parser read to the end of the content and waits for it.
+     *
+     * @return The staged file of the upload.
+     * @throws IOException If the content could not be staged, the partial file is deleted then.
+     */
+    public StagedFile completeUpload() throws IOException {
+        UploadOutputStream upload = currentUpload;
+        currentUpload = null;
+        if (upload == null) {
+            throw new IllegalStateException("No upload to complete");
+        }
+        return upload.complete();
+    }
+
+    /**
+     * Discards the last upload if it has not been completed, to be called when the upload failed or was
+     * interrupted. Deletes the partial file and stops the parser without reporting the truncated content.
+     */
+    public void abortUpload() {
+        UploadOutputStream upload = currentUpload;
+        currentUpload = null;
+        if (upload != null) {
+            upload.abort();
+        }
+    }
+
+    private void parse(BlockingPipe pipe) {
+        try (CSVReader reader = new CSVReaderBuilder(new InputStreamReader(pipe, StandardCharsets.UTF_8))
+                .withCSVParser(CsvColumnMapper.createParser())
+                .build()) {
+
+            String[] header = reader.readNext();
+            if (header == null) {
+                notifyListener(l -> l.parsingFinished(0));
+                return;
+            }
+            notifyListener(l -> l.headerParsed(header));
+
+            long rowCount = 0;
+            List<String[]> batch = new ArrayList<>();
+            long lastUpdate = System.nanoTime();
+            String[] row;
+            while ((row = reader.readNext()) != null) {
+                rowCount++;
+                if (rowCount <= maxPreviewRows) {
+                    batch.add(row);
+                    if (batch.size() >= ROWS_PER_UPDATE || System.nanoTime() - lastUpdate > UPDATE_INTERVAL_NANOS) {
+                        List<String[]> rows = batch;
+                        notifyListener(l -> l.rowsParsed(rows));
+                        batch = new ArrayList<>();
+                        lastUpdate = System.nanoTime();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                List<String[]> rows = batch;
+                notifyListener(l -> l.rowsParsed(rows));
+            }
+            long total = rowCount;
+            notifyListener(l -> l.parsingFinished(total));
+        } catch (IOException | CsvValidationException e) {
+            if (!pipe.isAborted()) {
+                notifyListener(l -> l.parsingFailed(e));
+            }
+        }
+    }
+
+    private void notifyListener(Consumer<Listener> event) {
+        owner.getUI().ifPresent(ui -> {
+            try {
+                ui.access(() -> event.accept(listener));
+            } catch (UIDetachedException e) {
+                // The view is gone, nobody is waiting for the preview anymore
+            }
+        });
+    }
+
+    /**
+     * Tees the upload into the staging file and the parser pipe.
+     */
+    private class UploadOutputStream extends OutputStream {
+        private final StagingOutputStream staging;
+        private final BlockingPipe pipe;
+        private final Thread parser;
+
+        UploadOutputStream(StagingOutputStream staging, BlockingPipe pipe, Thread parser) {
+            this.staging = staging;
+            this.pipe = pipe;
+            this.parser = parser;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            staging.write(b, off, len);
+            pipe.send(Arrays.copyOfRange(b, off, off + len));
+        }
+
+        /**
+         * Called by the upload handler after the last block, but also when the upload failed, before either is
+         * reported. Only closes the staging file, the parser keeps waiting for {@link #complete()} or
+         * {@link #abort()}.
+         */
+        @Override
+        public void close() throws IOException {
+            staging.close();
+        }
+
+        StagedFile complete() throws IOException {
+            try {
+                pipe.sendEndOfStream();
+                return staging.finish();
+            } catch (IOException e) {
+                abort();
+                throw e;
+            } finally {
+                try {
+                    parser.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        void abort() {
+            pipe.abort();
+            parser.interrupt();
+            staging.abort();
+        }
+    }
+
+    /**
+     * Bounded byte pipe between the upload thread and the parser thread.
+     * Writers block while the queue is full, unless the reading side has been closed.
+     */
+    private static class BlockingPipe extends InputStream {
+        private static final byte[] END_OF_STREAM = new byte[0];
+
+        private final BlockingQueue<byte[]> blocks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private volatile boolean readerClosed;
+        private volatile boolean aborted;
+        private byte[] current;
+        private int position;
+        private boolean ended;
+
+        void send(byte[] block) throws IOException {
+            try {
+                while (!readerClosed && !blocks.offer(block, 100, TimeUnit.MILLISECONDS)) {
+                    // Parser is behind; keep the upload waiting
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Upload interrupted while waiting for the parser");
+            }
+        }
+
+        void sendEndOfStream() throws IOException {
+            send(END_OF_STREAM);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!nextBlock()) {
+                return -1;
+            }
+            int count = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        private boolean nextBlock() throws IOException {
+            while (!ended && (current == null || position == current.length)) {
+                try {
+                    current = blocks.take();
+                    position = 0;
+                    ended = current == END_OF_STREAM;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Parser interrupted");
+                }
+            }
+            return !ended;
+        }
+
+        /**
+         * Marks the content as incomplete and releases a blocked writer; the parser is interrupted separately.
+         */
+        void abort() {
+            aborted = true;
+            close();
+        }
+
+        boolean isAborted() {
+            return aborted;
+        }
+
+        @Override
+        public void close() {
+            readerClosed = true;
+            blocks.clear();
+        }
+    }
+}
@@ -60,6 +60,43 @@ public class CsvColumnMapperTest {
         assertTrue(result.isEmpty());
     }
 
+    @Test
+    public void shouldRejectMappingGivenFullNameMappedWithFirstName() {
+        // given
+        List<String[]> entries = Collections.singletonList(new String[]{"John Doe", "Johnny", "123 Main St"});
+        CsvColumnMapper mapper = new CsvColumnMapper();
+        List<CsvMapping> mappings = List.of(
+                mapper.findMapping(CsvColumnMapper.FULL_NAME),
+                mapper.findMapping("First"),
+                mapper.findMapping("Address"));
+
+        // when
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> mapper.mapCsvToUsers(entries, mappings));
+
+        // then
+        assertTrue(e.getMessage().contains("Full name"));
+    }
+
+    @Test
+    public void shouldSplitFullNameGivenFullNameMappedWithoutFirstAndLastName() {
+        // given
+        List<String[]> entries = Collections.singletonList(new String[]{"John Doe", "Johnny", "123 Main St"});
+        CsvColumnMapper mapper = new CsvColumnMapper();
+        List<CsvMapping> mappings = Arrays.asList(
+                mapper.findMapping(CsvColumnMapper.FULL_NAME),
+                mapper.findMapping(CsvColumnMapper.IGNORE),
+                mapper.findMapping("Address"));
+
+        // when
+        List<User> result = mapper.mapCsvToUsers(entries, mappings);
+
+        // then
+        assertEquals(1, result.size());
+        assertEquals("John", result.get(0).getFirstName());
+        assertEquals("Doe", result.get(0).getLastName());
+    }
+
     private List<CsvMapping> createMockMappings(int count) {
         List<CsvMapping> mappings = new ArrayList<>();
         for (int i = 0; i < count; i++) {
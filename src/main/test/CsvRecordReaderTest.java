@@ -0,0 +1,48 @@
+import com.myflexbox.mapper.CsvRecordReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvRecordReaderTest {
+
+    private static final String CSV = "first;last\r\n\"Jon\nJr.\";Doe\nÅsa;Öberg\n";
+
+    @Test
+    public void shouldReadRecordsSpanningLinesGivenQuotedLineBreak() throws IOException {
+        // given
+        CsvRecordReader reader = new CsvRecordReader(stream(CSV, 0), 0);
+
+        // when
+        reader.readRecord();
+        String[] record = reader.readRecord();
+
+        // then
+        assertArrayEquals(new String[]{"Jon\nJr.", "Doe"}, record);
+    }
+
+    @Test
+    public void shouldResumeAtCheckpointedOffsetGivenMultiByteCharacters() throws IOException {
+        // given
+        CsvRecordReader reader = new CsvRecordReader(stream(CSV, 0), 0);
+        reader.readRecord();
+        reader.readRecord();
+        long checkpoint = reader.getOffset();
+
+        // when
+        CsvRecordReader resumed = new CsvRecordReader(stream(CSV, checkpoint), checkpoint);
+
+        // then
+        assertArrayEquals(new String[]{"Åsa", "Öberg"}, resumed.readRecord());
+        assertNull(resumed.readRecord());
+        assertEquals(CSV.getBytes(StandardCharsets.UTF_8).length, resumed.getOffset());
+    }
+
+    private ByteArrayInputStream stream(String csv, long offset) {
+        byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+        return new ByteArrayInputStream(bytes, (int) offset, bytes.length - (int) offset);
+    }
+}
@@ -0,0 +1,79 @@
+import com.myflexbox.dedup.DuplicateDetector;
+import com.myflexbox.dedup.DuplicateMatch;
+import com.myflexbox.dedup.PersonRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DuplicateDetectorTest {
+
+    private final DuplicateDetector detector = new DuplicateDetector(0.92);
+
+    @Test
+    public void shouldFlagLaterRowGivenNearIdenticalNameAtSamePostcode() {
+        // given
+        List<PersonRecord> records = List.of(
+                new PersonRecord(0, false, "John", "Doe", "Main Street 1", "1000"),
+                new PersonRecord(1, false, "Jane", "Smith", "Church Road 5", "2000"),
+                new PersonRecord(2, false, "Jon", "Doe", "Main Street 1", "1000"));
+
+        // when
+        List<DuplicateMatch> duplicates = detector.findDuplicates(records);
+
+        // then
+        assertEquals(1, duplicates.size());
+        assertEquals(2, duplicates.get(0).duplicate().key());
+        assertEquals(0, duplicates.get(0).original().key());
+    }
+
+    @Test
+    public void shouldKeepSavedUserAsOriginalGivenMatchWithExistingUser() {
+        // given
+        List<PersonRecord> records = List.of(
+                new PersonRecord(0, false, "Jöhn", "Doe", "Main Street 1", "1000"),
+                new PersonRecord(42, true, "John", "Doe", "Main Street 1", "1000"));
+
+        // when
+        List<DuplicateMatch> duplicates = detector.findDuplicates(records);
+
+        // then
+        assertEquals(1, duplicates.size());
+        assertFalse(duplicates.get(0).duplicate().existing());
+        assertTrue(duplicates.get(0).original().existing());
+        assertEquals(42, duplicates.get(0).original().key());
+    }
+
+    @Test
+    public void shouldNotReportSavedUserGivenTwoSavedUsersLinkedByImportedRow() {
+        // given
+        List<PersonRecord> records = List.of(
+                new PersonRecord(0, false, "John", "Doe", "Main Street 1", "1000"),
+                new PersonRecord(41, true, "Jon", "Doe", "Main Street 1", "1000"),
+                new PersonRecord(42, true, "John", "Doe", "Main Street 1", "1000"));
+
+        // when
+        List<DuplicateMatch> duplicates = detector.findDuplicates(records);
+
+        // then
+        assertEquals(1, duplicates.size());
+        assertEquals(0, duplicates.get(0).duplicate().key());
+        assertFalse(duplicates.get(0).duplicate().existing());
+        assertTrue(duplicates.get(0).original().existing());
+    }
+
+    @Test
+    public void shouldNotFlagGivenDifferentPeopleAtSamePostcode() {
+        // given
+        List<PersonRecord> records = List.of(
+                new PersonRecord(0, false, "John", "Doe", "Main Street 1", "1000"),
+                new PersonRecord(1, false, "Maria", "Dorn", "Station Lane 9", "1000"));
+
+        // when
+        List<DuplicateMatch> duplicates = detector.findDuplicates(records);
+
+        // then
+        assertTrue(duplicates.isEmpty());
+    }
+}
@@ -0,0 +1,78 @@
+import com.myflexbox.entity.Address;
+import com.myflexbox.entity.User;
+import com.myflexbox.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+public class EntityHashCodeTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Test
+    public void shouldFindTransientUserInSetGivenUserSavedAfterAdding() {
+        // given
+        User user = newUser(1);
+        Set<User> users = new HashSet<>();
+        users.add(user);
+
+        // when
+        userRepository.save(user);
+        testEntityManager.flush();
+        testEntityManager.clear();
+        User loaded = userRepository.findById(user.getId()).orElseThrow();
+
+        // then
+        assertNotNull(user.getId());
+        assertTrue(users.contains(user));
+        assertTrue(users.contains(loaded));
+        assertEquals(user.getAddress(), loaded.getAddress()); // The lazy address proxy compares by its key too
+    }
+
+    @Test
+    public void shouldSpreadUsersOverBucketsGivenDistinctUsers() {
+        // given
+        int count = 10_000;
+        int buckets = 16_384;
+
+        // when
+        Map<Integer, Integer> bucketSizes = new HashMap<>();
+        Set<Integer> hashCodes = new HashSet<>();
+        IntStream.range(0, count).mapToObj(EntityHashCodeTest::newUser).forEach(user -> {
+            int hash = user.hashCode();
+            hashCodes.add(hash);
+            bucketSizes.merge((hash ^ (hash >>> 16)) & (buckets - 1), 1, Integer::sum);
+        });
+
+        // then
+        assertTrue(hashCodes.size() >= count - 10, "Only " + hashCodes.size() + " distinct hash codes");
+        assertTrue(bucketSizes.values().stream().mapToInt(Integer::intValue).max().orElseThrow() <= 12,
+                "Users crowd into few buckets");
+    }
+
+    private static User newUser(int number) {
+        Address address = new Address();
+        address.setStreet("Street " + number);
+        address.setPostcode(String.format("%05d", number));
+        address.setCountry("Country");
+        User user = new User();
+        user.setFirstName("First " + number);
+        user.setLastName("Last " + number);
+        user.setAddress(address);
+        return user;
+    }
+}
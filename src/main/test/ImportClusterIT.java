@@ -0,0 +1,130 @@
+import com.myflexbox.Application;
+import com.myflexbox.entity.ImportJob;
+import com.myflexbox.entity.ImportJobStatus;
+import com.myflexbox.mapper.CsvColumnMapper;
+import com.myflexbox.mapper.CsvMapping;
+import com.myflexbox.service.ImportService;
+import com.myflexbox.service.ImportStagingService;
+import com.myflexbox.service.StagedFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Imports a file on two nodes sharing one file-based H2 database.
+ * This JVM runs node A, which the file is uploaded to, and starts node B as a second JVM from the same classpath.
+ * Node B is killed as soon as it imported its first chunk; the chunks it still held are taken over by node A once
+ * their leases expire, and every row has to end up imported exactly once.
+ * <p>
+ * Only runs when the number of rows is given, e.g. {@code -Pit -Dcluster.rows=200000}.
+ */
+@EnabledIfSystemProperty(named = "cluster.rows", matches = "\\d+")
+public class ImportClusterIT {
+
+    private static final Path DATA_DIR = Path.of("target", "cluster-it").toAbsolutePath();
+    private static final List<String> MAPPINGS = List.of("First", "Last", "Address", "ZIP", "Country");
+
+    @Test
+    public void shouldImportEveryRowOnceGivenNodeKilledMidImport() throws Exception {
+        int rows = Integer.getInteger("cluster.rows");
+        FileSystemUtils.deleteRecursively(DATA_DIR);
+        List<String> nodeArguments = List.of(
+                "--spring.datasource.url=jdbc:h2:file:" + DATA_DIR + "/csvimporter;AUTO_SERVER=TRUE",
+                "--csvimporter.import.staging-dir=" + DATA_DIR + "/staging",
+                "--csvimporter.cluster.enabled=true",
+                "--csvimporter.cluster.chunk-rows=" + Math.max(rows / 40, 1),
+                "--csvimporter.cluster.lease-seconds=5",
+                "--csvimporter.cluster.heartbeat-seconds=1",
+                "--csvimporter.cluster.poll-millis=200",
+                "--spring.jpa.show-sql=false",
+                "--vaadin.launch-browser=false",
+                "--server.port=0");
+
+        // Node A creates the schema before node B starts
+        try (ConfigurableApplicationContext nodeA = new SpringApplicationBuilder(Application.class)
+                .run(arguments(nodeArguments, "node-a", 1))) {
+            Process nodeB = startNode(arguments(nodeArguments, "node-b", 2));
+            try {
+                JdbcTemplate jdbcTemplate = nodeA.getBean(JdbcTemplate.class);
+                StagedFile stagedFile = nodeA.getBean(ImportStagingService.class)
+                        .stage(new ByteArrayInputStream(generateCsv(rows)), "cluster.csv");
+                CsvColumnMapper csvColumnMapper = new CsvColumnMapper();
+                List<CsvMapping> mappings = MAPPINGS.stream().map(csvColumnMapper::findMapping).toList();
+
+                CompletableFuture<ImportJob> result = CompletableFuture.supplyAsync(
+                        () -> nodeA.getBean(ImportService.class).importFile(stagedFile, mappings, null, false));
+
+                await(() -> count(jdbcTemplate, "SELECT COUNT(*) FROM import_chunk WHERE owner = 'node-b' AND status = 'DONE'") > 0);
+                nodeB.destroyForcibly().waitFor();
+
+                ImportJob job = result.get(10, TimeUnit.MINUTES);
+                assertEquals(ImportJobStatus.COMPLETED, job.getStatus());
+                assertEquals(rows, job.getUsersImported());
+                assertEquals(rows, count(jdbcTemplate, "SELECT COUNT(*) FROM users"));
+                assertEquals(rows, count(jdbcTemplate, "SELECT COUNT(DISTINCT first_name) FROM users"));
+                assertEquals(0, count(jdbcTemplate, "SELECT COUNT(*) FROM import_chunk WHERE status <> 'DONE'"));
+                assertTrue(count(jdbcTemplate, "SELECT COUNT(*) FROM import_chunk WHERE owner = 'node-a'") > 0);
+            } finally {
+                nodeB.destroyForcibly();
+            }
+        }
+    }
+
+    private static String[] arguments(List<String> nodeArguments, String nodeId, int workerThreads) {
+        return Stream.concat(nodeArguments.stream(), Stream.of(
+                "--csvimporter.cluster.node-id=" + nodeId,
+                "--csvimporter.cluster.worker-threads=" + workerThreads)).toArray(String[]::new);
+    }
+
+    private static Process startNode(String[] arguments) throws Exception {
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                Application.class.getName()));
+        command.addAll(List.of(arguments));
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(DATA_DIR.resolve("node-b.log").toFile())
+                .start();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for node B");
+            Thread.sleep(200);
+        }
+    }
+
+    private static long count(JdbcTemplate jdbcTemplate, String sql) {
+        Long count = jdbcTemplate.queryForObject(sql, Long.class);
+        return count == null ? 0 : count;
+    }
+
+    private static byte[] generateCsv(int rows) {
+        StringBuilder csv = new StringBuilder("First name;Last name;Street;ZIP;Country\n");
+        for (int row = 0; row < rows; row++) {
+            csv.append("First").append(row).append(';')
+                    .append("Last").append(row % 5_000).append(';')
+                    .append("Street ").append(row).append(';')
+                    .append(String.format("%05d", row % 90_000)).append(';')
+                    .append("Country ").append(row % 50).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
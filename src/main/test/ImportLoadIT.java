@@ -0,0 +1,244 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives concurrent sessions through the upload, map and save flow of the import view against a local server.
+ * Each virtual user keeps its own cookies and opens the grid-csv view, which creates the Vaadin session and the
+ * UI scoped view on the server. The generated CSV file is posted to the target URL of the view's Upload component,
+ * taken from the init response, so it is streamed through the view's receiver and fills the preview held by the
+ * session. Choosing the mappings in the view's combo boxes needs the client side, so the staged file is saved with
+ * a mapping through the /api/imports endpoint, which runs the same import service as the Save button.
+ * <p>
+ * Only runs when the number of sessions is given, e.g. {@code -Pit -Dloadtest.sessions=20 -Dloadtest.rows=20000}.
+ * It prints p50/p95/p99 per stage, the heap peak and the rows imported per second. Releases can be gated on
+ * {@code -Dloadtest.maxP95Millis}, {@code -Dloadtest.maxHeapMb} and {@code -Dloadtest.minRowsPerSecond}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.show-sql=false",
+        "csvimporter.import.staging-dir=./target/loadtest/staging",
+        "vaadin.launch-browser=false"
+})
+@EnabledIfSystemProperty(named = "loadtest.sessions", matches = "\\d+")
+public class ImportLoadIT {
+
+    private static final String[] STAGES = {"session", "upload", "save", "total"};
+    private static final String[] HEADER = {"First name", "Last name", "Street", "ZIP", "Country"};
+    private static final List<String> MAPPINGS = List.of("First", "Last", "Address", "ZIP", "Country");
+    private static final Pattern UPLOAD_TARGET = Pattern.compile("VAADIN/dynamic/resource/[^\"\\s]+/upload");
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, Queue<Long>> latencies = new ConcurrentHashMap<>();
+
+    @Test
+    public void shouldReportImportLatencyUnderConcurrentSessions() throws Exception {
+        int sessions = Integer.getInteger("loadtest.sessions");
+        int rows = Integer.getInteger("loadtest.rows", 10_000);
+
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        ExecutorService executor = Executors.newFixedThreadPool(sessions);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int session = 0; session < sessions; session++) {
+            int id = session;
+            results.add(executor.submit(() -> {
+                start.await();
+                return runSession(id, rows);
+            }));
+        }
+
+        long started = System.nanoTime();
+        start.countDown();
+        long imported = 0;
+        for (Future<Long> result : results) {
+            imported += result.get();
+        }
+        double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+        executor.shutdown();
+
+        // Sum of the per-pool peaks, an upper bound of the peak heap usage
+        long heapPeakMb = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum() / (1024 * 1024);
+        double rowsPerSecond = imported / seconds;
+
+        System.out.printf("%d sessions x %d rows%n", sessions, rows);
+        for (String stage : STAGES) {
+            long[] nanos = latencies.getOrDefault(stage, new ConcurrentLinkedQueue<>()).stream()
+                    .mapToLong(Long::longValue).sorted().toArray();
+            System.out.printf("%-8s p50=%.1f ms p95=%.1f ms p99=%.1f ms%n", stage,
+                    percentile(nanos, 50), percentile(nanos, 95), percentile(nanos, 99));
+        }
+        // The sessions and their views are still alive here, so the heap peak includes every session's preview
+        System.out.printf("heap peak=%d MB (%.1f MB per session), %.0f rows/s%n", heapPeakMb,
+                (double) heapPeakMb / sessions, rowsPerSecond);
+
+        assertEquals((long) sessions * rows, imported);
+        Long maxP95Millis = Long.getLong("loadtest.maxP95Millis");
+        if (maxP95Millis != null) {
+            long[] total = latencies.get("total").stream().mapToLong(Long::longValue).sorted().toArray();
+            assertTrue(percentile(total, 95) <= maxP95Millis, "p95 of the whole flow above " + maxP95Millis + " ms");
+        }
+        Long maxHeapMb = Long.getLong("loadtest.maxHeapMb");
+        if (maxHeapMb != null) {
+            assertTrue(heapPeakMb <= maxHeapMb, "Heap peak " + heapPeakMb + " MB above " + maxHeapMb + " MB");
+        }
+        Long minRowsPerSecond = Long.getLong("loadtest.minRowsPerSecond");
+        if (minRowsPerSecond != null) {
+            assertTrue(rowsPerSecond >= minRowsPerSecond, rowsPerSecond + " rows/s below " + minRowsPerSecond);
+        }
+    }
+
+    /**
+     * Runs one virtual user through the whole flow.
+     *
+     * @return the number of users it imported.
+     */
+    private long runSession(int session, int rows) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        long started = System.nanoTime();
+
+        String uploadTarget = timed("session", () -> {
+            // The bootstrap page creates the HTTP session, the init request the UI with the UI scoped view
+            assertOk(client.send(get("/grid-csv"), HttpResponse.BodyHandlers.discarding()));
+            HttpResponse<String> init = client.send(get("/?v-r=init&location=grid-csv&query="),
+                    HttpResponse.BodyHandlers.ofString());
+            assertOk(init);
+            return uploadTarget(init.body());
+        });
+
+        byte[] csv = generateCsv(session, rows);
+        timed("upload", () -> {
+            assertOk(client.send(multipart(uploadTarget, "session-" + session + ".csv", csv),
+                    HttpResponse.BodyHandlers.discarding()));
+            return null;
+        });
+        // The view stages the upload under the SHA-256 of its content
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(csv));
+
+        JsonNode result = timed("save", () -> {
+            String body = objectMapper.writeValueAsString(Map.of(
+                    "fileName", "session-" + session + ".csv",
+                    "mappings", MAPPINGS));
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/api/imports/" + hash))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            assertOk(response);
+            return objectMapper.readTree(response.body());
+        });
+
+        latencies.computeIfAbsent("total", stage -> new ConcurrentLinkedQueue<>()).add(System.nanoTime() - started);
+        return result.get("usersImported").asLong();
+    }
+
+    private <T> T timed(String stage, Callable<T> step) throws Exception {
+        long start = System.nanoTime();
+        T result = step.call();
+        latencies.computeIfAbsent(stage, key -> new ConcurrentLinkedQueue<>()).add(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Generates a semicolon separated file whose content differs per session, so every upload is a new import.
+     */
+    private byte[] generateCsv(int session, int rows) {
+        StringBuilder csv = new StringBuilder(String.join(";", HEADER)).append('\n');
+        for (int row = 0; row < rows; row++) {
+            csv.append("First").append(session).append('_').append(row).append(';')
+                    .append("Last").append(row % 5_000).append(';')
+                    .append("Street ").append(row).append(';')
+                    .append(String.format("%05d", row % 90_000)).append(';')
+                    .append("Country ").append(row % 50).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Finds the URL the Upload component of the view posts files to, e.g.
+     * {@code VAADIN/dynamic/resource/0/<key>/upload}, in the UIDL of the init response.
+     */
+    private static String uploadTarget(String initResponse) {
+        Matcher matcher = UPLOAD_TARGET.matcher(initResponse.replace("\\/", "/"));
+        assertTrue(matcher.find(), "No upload target in the init response");
+        return "/" + matcher.group();
+    }
+
+    private HttpRequest multipart(String path, String fileName, byte[] content) {
+        String boundary = "----loadtest" + System.nanoTime();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 256);
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: text/csv\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(uri(path)).GET().build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static void assertOk(HttpResponse<?> response) {
+        assertEquals(200, response.statusCode(), () -> response.request().uri() + " answered " + response.statusCode());
+    }
+
+    private double percentile(long[] sortedNanos, int percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = Math.min(sortedNanos.length - 1, sortedNanos.length * percentile / 100);
+        return sortedNanos[index] / 1_000_000.0;
+    }
+}
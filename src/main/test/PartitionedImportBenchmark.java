@@ -0,0 +1,112 @@
+import com.myflexbox.beans.ImportProperties;
+import com.myflexbox.entity.ImportJob;
+import com.myflexbox.mapper.CsvColumnMapper;
+import com.myflexbox.mapper.CsvMapping;
+import com.myflexbox.service.ImportService;
+import com.myflexbox.service.ImportStagingService;
+import com.myflexbox.service.StagedFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures how the import throughput scales with the number of writer partitions on file-backed H2.
+ * The same number of rows is imported with 1, 2 and 4 writers (1 being the checkpointed chunks); every run
+ * starts from empty tables and imports a file of its own, so no job is reused.
+ * Only runs when the number of rows is given, e.g. {@code -Dbenchmark.importRows=500000}; add
+ * {@code -Dbenchmark.writers=1,2,4,8} to measure other writer counts.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:file:./target/benchmark/import;CACHE_SIZE=131072",
+        "spring.jpa.show-sql=false",
+        "csvimporter.import.staging-dir=./target/benchmark/staging",
+        "csvimporter.import.bulk-load-enabled=false",
+        "vaadin.launch-browser=false"
+})
+@EnabledIfSystemProperty(named = "benchmark.importRows", matches = "\\d+")
+public class PartitionedImportBenchmark {
+
+    private static final List<String> MAPPINGS = List.of("First", "Last", "Address", "ZIP", "Country");
+
+    @Autowired
+    private ImportService importService;
+
+    @Autowired
+    private ImportStagingService importStagingService;
+
+    @Autowired
+    private ImportProperties importProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final CsvColumnMapper csvColumnMapper = new CsvColumnMapper();
+
+    @AfterEach
+    public void restoreWriters() {
+        importProperties.setWriters(1);
+    }
+
+    @Test
+    public void shouldReportThroughputPerWriterCount() throws Exception {
+        int rows = Integer.getInteger("benchmark.importRows");
+        List<CsvMapping> mappings = MAPPINGS.stream().map(csvColumnMapper::findMapping).toList();
+        int[] writerCounts = parseWriterCounts(System.getProperty("benchmark.writers", "1,2,4"));
+
+        importRows(1, Math.max(rows / 10, 1), mappings, "warmup"); // Warm up the JIT and the connection pool
+
+        double baseline = 0;
+        for (int writers : writerCounts) {
+            double rowsPerSecond = importRows(writers, rows, mappings, "writers-" + writers);
+            if (baseline == 0) {
+                baseline = rowsPerSecond;
+            }
+            System.out.printf("writers=%d %.0f rows/s (x%.2f)%n", writers, rowsPerSecond, rowsPerSecond / baseline);
+        }
+    }
+
+    private double importRows(int writers, int rows, List<CsvMapping> mappings, String run) throws Exception {
+        jdbcTemplate.execute("DELETE FROM users");
+        jdbcTemplate.execute("DELETE FROM address");
+        jdbcTemplate.execute("CHECKPOINT SYNC");
+        importProperties.setWriters(writers);
+        StagedFile stagedFile = importStagingService.stage(
+                new ByteArrayInputStream(generateCsv(run, rows)), run + ".csv");
+
+        long start = System.nanoTime();
+        ImportJob job = importService.importFile(stagedFile, mappings, null, false);
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        assertEquals(rows, job.getUsersImported());
+        return rows / seconds;
+    }
+
+    private static int[] parseWriterCounts(String value) {
+        return Arrays.stream(value.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    /**
+     * Generates a semicolon separated file whose content differs per run, so every run creates a new job.
+     */
+    private static byte[] generateCsv(String run, int rows) {
+        StringBuilder csv = new StringBuilder("First name;Last name;Street;ZIP;Country\n");
+        for (int row = 0; row < rows; row++) {
+            csv.append(run).append('_').append(row).append(';')
+                    .append("Last").append(row % 5_000).append(';')
+                    .append("Street ").append(row).append(';')
+                    .append(String.format("%05d", row % 90_000)).append(';')
+                    .append("Country ").append(row % 50).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,152 @@
+import com.myflexbox.entity.Address;
+import com.myflexbox.entity.ImportJob;
+import com.myflexbox.entity.ImportJobStatus;
+import com.myflexbox.entity.User;
+import com.myflexbox.repository.ImportJobPartitionRepository;
+import com.myflexbox.repository.ImportJobRepository;
+import com.myflexbox.repository.UserRepository;
+import com.myflexbox.service.ImportJobResumer;
+import com.myflexbox.service.PartitionedImportWriter;
+import com.myflexbox.service.PartitionedWrite;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Writes users through four writer partitions and checks the commit barrier and the revert of a write
+ * interrupted while committing, by the id ranges stored with its job.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:partitioned-write-it",
+        "spring.jpa.show-sql=false",
+        "csvimporter.import.writers=4",
+        "vaadin.launch-browser=false"
+})
+public class PartitionedWriteIT {
+
+    private static final int ROWS = 5_000;
+
+    @Autowired
+    private PartitionedImportWriter partitionedImportWriter;
+
+    @Autowired
+    private ImportJobRepository importJobRepository;
+
+    @Autowired
+    private ImportJobPartitionRepository importJobPartitionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ImportJobResumer importJobResumer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void clearUsers() {
+        jdbcTemplate.execute("DELETE FROM users");
+        jdbcTemplate.execute("DELETE FROM address");
+    }
+
+    @Test
+    public void shouldShowNoRowsUntilEveryPartitionIsWrittenGivenCommitBarrier() {
+        // given
+        AtomicLong visibleWhenPrepared = new AtomicLong(-1);
+        long written;
+
+        // when
+        try (PartitionedWrite write = partitionedImportWriter.open()) {
+            for (int row = 0; row < ROWS; row++) {
+                write.write(newUser(row));
+            }
+            assertEquals(0, countUsers());
+            written = write.commit((writtenIds, users) -> {
+                assertEquals(4, writtenIds.size());
+                visibleWhenPrepared.set(countUsers());
+            });
+        }
+
+        // then
+        assertEquals(ROWS, written);
+        assertEquals(0, visibleWhenPrepared.get());
+        assertEquals(ROWS, countUsers());
+    }
+
+    @Test
+    public void shouldDeleteCommittedRowsGivenJobInterruptedWhileCommitting() {
+        // given
+        User saved = userRepository.save(newUser(-1));
+        ImportJob job = newJob();
+        try (PartitionedWrite write = partitionedImportWriter.open()) {
+            for (int row = 0; row < ROWS; row++) {
+                write.write(newUser(row));
+            }
+            write.commit((writtenIds, users) -> {
+                job.setStatus(ImportJobStatus.COMMITTING);
+                job.setChunksCommitted(1);
+                job.setUsersImported(users);
+                importJobRepository.save(job);
+                partitionedImportWriter.saveWrittenIds(job, writtenIds);
+            });
+        }
+        // The application stops before the job is completed
+        assertEquals(ROWS + 1, countUsers());
+
+        // when
+        importJobResumer.run(new DefaultApplicationArguments());
+
+        // then
+        ImportJob reverted = importJobRepository.findById(job.getId()).orElseThrow();
+        assertEquals(ImportJobStatus.FAILED, reverted.getStatus());
+        assertEquals(0, reverted.getChunksCommitted());
+        assertEquals(0, reverted.getUsersImported());
+        assertEquals(1, countUsers());
+        assertTrue(userRepository.findById(saved.getId()).isPresent());
+        assertEquals(1, count("SELECT COUNT(*) FROM address"));
+        assertTrue(importJobPartitionRepository.findByJobId(job.getId()).isEmpty());
+    }
+
+    private ImportJob newJob() {
+        ImportJob job = new ImportJob();
+        job.setFileName("partitioned.csv");
+        job.setSourceHash("partitioned-write-it");
+        job.setStagedPath("partitioned.csv");
+        job.setColumnMappings("First,Last,Address,ZIP,Country");
+        job.setColumnTransforms("");
+        job.setStatus(ImportJobStatus.RUNNING);
+        job.setCreatedAt(LocalDateTime.now());
+        job.setUpdatedAt(job.getCreatedAt());
+        return importJobRepository.save(job);
+    }
+
+    private long countUsers() {
+        return count("SELECT COUNT(*) FROM users");
+    }
+
+    private long count(String sql) {
+        Long count = jdbcTemplate.queryForObject(sql, Long.class);
+        return count == null ? 0 : count;
+    }
+
+    private static User newUser(int row) {
+        Address address = new Address();
+        address.setStreet("Street " + row);
+        address.setPostcode(String.format("%05d", Math.abs(row) % 90_000));
+        address.setCountry("Country " + Math.abs(row) % 50);
+        User user = new User();
+        user.setFirstName("First" + row);
+        user.setLastName("Last" + row % 5_000);
+        user.setAddress(address);
+        return user;
+    }
+}
@@ -0,0 +1,124 @@
+import com.myflexbox.mapper.TransformCompiler;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransformCompilerTest {
+
+    @Test
+    public void shouldApplyPipelineLeftToRightGivenChainedFunctions() {
+        // given
+        UnaryOperator<String> transform = TransformCompiler.compile("trim | upper");
+
+        // when
+        String result = transform.apply("  belgium ");
+
+        // then
+        assertEquals("BELGIUM", result);
+    }
+
+    @Test
+    public void shouldNormalizeZipGivenDigitsAndPad() {
+        // given
+        UnaryOperator<String> transform = TransformCompiler.compile("digits | pad(5, \"0\")");
+
+        // when
+        String result = transform.apply("8781 TP");
+
+        // then
+        assertEquals("08781", result);
+    }
+
+    @Test
+    public void shouldPickLastPartGivenNegativeSplitIndex() {
+        // given
+        UnaryOperator<String> transform = TransformCompiler.compile("split(' ', -1)");
+
+        // when
+        String result = transform.apply("John Ronald Doe");
+
+        // then
+        assertEquals("Doe", result);
+    }
+
+    @Test
+    public void shouldApplyDefaultGivenNullValue() {
+        // given
+        UnaryOperator<String> transform = TransformCompiler.compile("trim | default(\"n/a\") | upper");
+
+        // when
+        String result = transform.apply(null);
+
+        // then
+        assertEquals("N/A", result);
+    }
+
+    @Test
+    public void shouldKeepNullGivenNullValueAndNoDefault() {
+        // given
+        UnaryOperator<String> transform = TransformCompiler.compile("trim | upper");
+
+        // when
+        String result = transform.apply(null);
+
+        // then
+        assertNull(result);
+    }
+
+    @Test
+    public void shouldRejectExpressionGivenUnknownFunction() {
+        // when
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> TransformCompiler.compile("trim | shout"));
+
+        // then
+        assertTrue(e.getMessage().contains("shout"));
+    }
+
+    @Test
+    public void shouldRejectExpressionGivenNegativeSubstringIndex() {
+        // when
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> TransformCompiler.compile("substring(-1)"));
+
+        // then
+        assertTrue(e.getMessage().contains("non-negative"));
+    }
+
+    @Test
+    public void shouldClampSubstringGivenIndexesBeyondValue() {
+        // given
+        UnaryOperator<String> transform = TransformCompiler.compile("substring(2, 10)");
+
+        // when
+        String result = transform.apply("NL-8781");
+
+        // then
+        assertEquals("-8781", result);
+        assertEquals("", TransformCompiler.compile("substring(10)").apply("NL"));
+    }
+
+    @Test
+    public void shouldRejectExpressionGivenUnknownRegexGroup() {
+        // when
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> TransformCompiler.compile("regex('([0-9]+) ([A-Z]+)', '$3')"));
+
+        // then
+        assertTrue(e.getMessage().contains("replacement"));
+    }
+
+    @Test
+    public void shouldApplyRegexGivenValidGroupReferences() {
+        // given
+        UnaryOperator<String> transform = TransformCompiler.compile("regex('([0-9]+) ([A-Z]+)', '$2 $1')");
+
+        // when
+        String result = transform.apply("8781 TP");
+
+        // then
+        assertEquals("TP 8781", result);
+    }
+}
@@ -0,0 +1,92 @@
+import com.myflexbox.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures the indexed user lookups against a large table.
+ * Only runs when the number of rows is given, e.g. {@code -Dbenchmark.rows=10000000}; the rows are generated once
+ * into a file-backed database under target/benchmark and reused by later runs.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:file:./target/benchmark/users",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+        "vaadin.launch-browser=false"
+})
+@EnabledIfSystemProperty(named = "benchmark.rows", matches = "\\d+")
+public class UserLookupBenchmark {
+
+    private static final int LAST_NAMES = 50_000;
+    private static final int POSTCODES = 100_000;
+    private static final int COUNTRIES = 200;
+    private static final int LOOKUPS = 2_000;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Random random = new Random(42);
+
+    @BeforeEach
+    public void seedUsers() {
+        long rows = Long.getLong("benchmark.rows");
+        Long existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+        if (existing != null && existing >= rows) {
+            return;
+        }
+        jdbcTemplate.execute("DELETE FROM users");
+        jdbcTemplate.execute("DELETE FROM address");
+        jdbcTemplate.execute("INSERT INTO address (id, street, postcode, country) "
+                + "SELECT X, 'Street ' || X, LPAD(MOD(X, " + POSTCODES + "), 5, '0'), 'Country ' || MOD(X, " + COUNTRIES + ") "
+                + "FROM SYSTEM_RANGE(1, " + rows + ")");
+        jdbcTemplate.execute("INSERT INTO users (id, first_name, last_name, address_id) "
+                + "SELECT X, 'First ' || X, 'Last ' || MOD(X, " + LAST_NAMES + "), X "
+                + "FROM SYSTEM_RANGE(1, " + rows + ")");
+    }
+
+    @Test
+    public void shouldReportLookupLatency() {
+        Pageable firstPage = PageRequest.of(0, 50);
+
+        report("lastName", i -> assertTrue(userRepository
+                .findByLastName("Last " + random.nextInt(LAST_NAMES), firstPage).hasContent()));
+        report("postcode", i -> assertTrue(userRepository
+                .findSummariesByPostcode(String.format("%05d", random.nextInt(POSTCODES)), firstPage).hasContent()));
+        report("country", i -> assertTrue(userRepository
+                .findSummariesByCountry("Country " + random.nextInt(COUNTRIES), firstPage).hasContent()));
+    }
+
+    private void report(String lookup, IntConsumer query) {
+        for (int i = 0; i < LOOKUPS / 10; i++) {
+            query.accept(i); // Warm up
+        }
+        long[] nanos = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            long start = System.nanoTime();
+            query.accept(i);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-8s p50=%.3f ms p95=%.3f ms p99=%.3f ms%n", lookup,
+                percentile(nanos, 50), percentile(nanos, 95), percentile(nanos, 99));
+    }
+
+    private double percentile(long[] sortedNanos, int percentile) {
+        int index = Math.min(sortedNanos.length - 1, sortedNanos.length * percentile / 100);
+        return sortedNanos[index] / 1_000_000.0;
+    }
+}